@@ -0,0 +1,116 @@
+package com.twotoasters.watchface.gears.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH CSV result files, as written by the {@code jmh} task, and
+ * reports time and allocations per operation for every benchmark in both.
+ *
+ * Exits with status 1 if any benchmark got slower by more than the threshold
+ * (10% unless given as the third argument) or allocates more than it did in
+ * the baseline.
+ *
+ * Usage: {@code BaselineComparison <baseline.csv> <results.csv> [threshold %]}
+ */
+public class BaselineComparison {
+
+    private static final String ALLOCATION_SUFFIX = "gc.alloc.rate.norm";
+    private static final double ALLOCATION_SLACK_BYTES = 1.0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.csv> <results.csv> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        Map<String, Double> baseline = read(args[0]);
+        Map<String, Double> results = read(args[1]);
+
+        boolean regressed = false;
+        System.out.println(String.format(Locale.US, "%-60s %14s %14s %10s %14s",
+                "Benchmark", "baseline", "current", "change", "ops/s"));
+
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            String name = entry.getKey();
+            double current = entry.getValue();
+            Double previous = baseline.get(name);
+            boolean allocation = name.endsWith(ALLOCATION_SUFFIX);
+            String unit = allocation ? "B/op" : "ns/op";
+
+            if (previous == null) {
+                System.out.println(String.format(Locale.US, "%-60s %14s %11.2f %s %10s",
+                        name, "-", current, unit, "new"));
+                continue;
+            }
+
+            double change = previous == 0 ? 0 : (current - previous) / previous;
+            boolean worse = allocation
+                    ? current > previous + ALLOCATION_SLACK_BYTES
+                    : change > threshold;
+            regressed |= worse;
+
+            System.out.println(String.format(Locale.US, "%-60s %11.2f %s %11.2f %s %+9.1f%% %14s%s",
+                    name, previous, unit, current, unit, change * 100,
+                    allocation ? "" : String.format(Locale.US, "%.0f", 1e9 / current),
+                    worse ? "  REGRESSION" : ""));
+        }
+
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * Reads the average time and normalized allocation rows of a result file,
+     * keyed by benchmark name without the package.
+     */
+    private static Map<String, Double> read(String path) throws IOException {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), "UTF-8"))) {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                ArrayList<String> columns = split(line);
+                if (columns.size() < 7) {
+                    continue;
+                }
+                String name = columns.get(0);
+                int colon = name.indexOf(':');
+                String benchmark = colon >= 0 ? name.substring(0, colon) : name;
+                benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+
+                if (colon < 0) {
+                    scores.put(benchmark, Double.parseDouble(columns.get(4)));
+                } else if (name.endsWith(ALLOCATION_SUFFIX)) {
+                    scores.put(benchmark + ":" + ALLOCATION_SUFFIX, Double.parseDouble(columns.get(4)));
+                }
+            }
+        }
+        return scores;
+    }
+
+    private static ArrayList<String> split(String line) {
+        ArrayList<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        return columns;
+    }
+}
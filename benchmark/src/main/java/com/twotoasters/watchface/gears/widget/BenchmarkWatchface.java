@@ -0,0 +1,79 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+
+import org.joda.time.DateTime;
+
+/**
+ * A watchface that does nothing but remember what it was given, so the
+ * benchmarks measure the library and not the face.
+ */
+class BenchmarkWatchface implements IWatchface {
+
+    private final Context mContext = new Context();
+    private final Handler mHandler = new Handler();
+
+    long lastMillis;
+    int lastBatteryLevel;
+
+    @Override
+    public void onActiveStateChanged(boolean active) {
+    }
+
+    @Override
+    public void onTimeChanged(@NonNull DateTime time) {
+        lastMillis = time.getMillis();
+    }
+
+    @Override
+    public void onBatteryLevelChanged(int percentage) {
+        lastBatteryLevel = percentage;
+    }
+
+    @Override
+    public boolean handleSecondsInDimMode() {
+        return false;
+    }
+
+    @Override
+    public boolean isInEditMode() {
+        return false;
+    }
+
+    @Override
+    public void onAttachedToWindow() {
+    }
+
+    @Override
+    public void onDetachedFromWindow() {
+    }
+
+    @Override
+    public Context getContext() {
+        return mContext;
+    }
+
+    @Override
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    @Override
+    public Resources getResources() {
+        return mContext.getResources();
+    }
+
+    /**
+     * The same face, receiving {@link WatchTime} snapshots instead.
+     */
+    static class Snapshot extends BenchmarkWatchface implements IWatchTimeListener {
+
+        @Override
+        public void onTimeChanged(@NonNull WatchTime time) {
+            lastMillis = time.getMillis();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.twotoasters.watchface.gears.widget;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering the time as text and of working out what a format shows,
+ * next to the Joda-Time calls they replace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final LocalTime TEST_TIME = LocalTime.parse("01:02:03");
+
+    private final WatchTime mTime = new WatchTime();
+    private final TimeTextCache mTimeText = new TimeTextCache();
+    private long mMillis;
+
+    @Setup
+    public void setUp() {
+        mTimeText.setFormat(WatchFormat.compile("h:mm:ss a", Locale.US));
+        mTimeText.setZone(DateTimeZone.UTC);
+        mMillis = System.currentTimeMillis();
+    }
+
+    /** Renders one second tick through the segment cache. */
+    @Benchmark
+    public int timeTextSecondTick() {
+        mMillis += 1000;
+        mTime.set(mMillis, 0, 0);
+        mTimeText.onTimeChanged(mTime.getChanges());
+        mTimeText.update(mTime);
+        return mTimeText.length();
+    }
+
+    /** Renders one second tick by printing the whole default format. */
+    @Benchmark
+    public String jodaPrintSecondTick() {
+        mMillis += 1000;
+        return Watch.DEFAULT_FORMAT_12_HOUR.print(mMillis);
+    }
+
+    @Benchmark
+    public WatchFormat compileFormat() {
+        return WatchFormat.compile("h:mm:ss a", Locale.US);
+    }
+
+    /** The seconds detection chooseFormat used before formats were compiled. */
+    @Benchmark
+    public boolean printTestTimeForSeconds() {
+        return Watch.DEFAULT_FORMAT_12_HOUR.print(TEST_TIME).contains("03");
+    }
+}
@@ -0,0 +1,59 @@
+package com.twotoasters.watchface.gears.widget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a frame's time into hand directions, through
+ * {@link HandAngles} and the way faces did it by hand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandAnglesBenchmark {
+
+    private static final long START_MILLIS = 1400000000000L;
+    private static final long FRAME_MILLIS = 33;
+
+    private final WatchTime mTime = new WatchTime();
+    private final HandAngles mHandAngles = new HandAngles();
+    private long mMillis;
+
+    @Setup
+    public void setUp() {
+        mMillis = START_MILLIS;
+    }
+
+    @Benchmark
+    public float sweepFrameHandAngles() {
+        mMillis += FRAME_MILLIS;
+        mTime.set(mMillis, 0, 0);
+        mHandAngles.update(mTime);
+        return mHandAngles.getSmoothX(HandAngles.HOUR) + mHandAngles.getSmoothX(HandAngles.MINUTE)
+                + mHandAngles.getSmoothX(HandAngles.SECOND);
+    }
+
+    @Benchmark
+    public float sweepFrameMath() {
+        mMillis += FRAME_MILLIS;
+        mTime.set(mMillis, 0, 0);
+        float seconds = mTime.getSecondOfMinute() + mTime.getMillisOfSecond() / 1000f;
+        float minutes = mTime.getMinuteOfHour() + seconds / 60f;
+        float hours = mTime.getHourOfDay() % 12 + minutes / 60f;
+        return (float) (Math.sin(Math.toRadians(hours * 30f)) + Math.sin(Math.toRadians(minutes * 6f))
+                + Math.sin(Math.toRadians(seconds * 6f)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak run: replays a simulated day of second ticks, minute ticks and a time
+ * zone change per operation through a {@link WatchSimulator}, so time and
+ * allocations are reported per day of runtime.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private WatchSimulator mSimulator;
+    private BenchmarkWatchface mFace;
+    private Watch mWatch;
+
+    @Setup
+    public void setUp() {
+        mSimulator = new WatchSimulator(new Context(), System.currentTimeMillis());
+        mFace = new BenchmarkWatchface.Snapshot();
+        mWatch = new Watch(mFace, mSimulator.getTickHub());
+        mWatch.onAttachedToWindow();
+    }
+
+    @Benchmark
+    public long simulatedDay() {
+        mSimulator.advanceBy(MILLIS_PER_DAY / 2);
+        mSimulator.changeTimeZone("America/New_York");
+        mSimulator.advanceBy(MILLIS_PER_DAY / 2);
+        mSimulator.changeTimeZone("Europe/Berlin");
+        return mFace.lastMillis;
+    }
+}
@@ -0,0 +1,94 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.text.format.DateFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of delivering one tick from the {@link TickHub} to a watchface, and of
+ * re-evaluating the format after a settings change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WatchTickBenchmark {
+
+    private BenchmarkWatchface mDateTimeFace;
+    private BenchmarkWatchface mSnapshotFace;
+    private Watch mDateTimeWatch;
+    private Watch mSnapshotWatch;
+    private BenchmarkWatchface mMetricsFace;
+    private Watch mMetricsWatch;
+    private BenchmarkWatchface mWorldClockFace;
+    private Watch mWorldClockWatch;
+
+    @Setup
+    public void setUp() {
+        DateFormat.sIs24HourFormat = false;
+
+        mDateTimeFace = new BenchmarkWatchface();
+        mDateTimeWatch = new Watch(mDateTimeFace);
+
+        mSnapshotFace = new BenchmarkWatchface.Snapshot();
+        mSnapshotWatch = new Watch(mSnapshotFace);
+
+        mMetricsFace = new BenchmarkWatchface.Snapshot();
+        mMetricsWatch = new Watch(mMetricsFace);
+        mMetricsWatch.setMetrics(new WatchMetrics());
+
+        mWorldClockFace = new BenchmarkWatchface.Snapshot();
+        mWorldClockWatch = new Watch(mWorldClockFace);
+        mWorldClockWatch.setZones("America/Los_Angeles", "America/New_York", "Europe/London",
+                "Europe/Berlin", "Asia/Kolkata", "Asia/Tokyo");
+    }
+
+    @Benchmark
+    public long secondTickDateTime() {
+        mDateTimeWatch.onSecondTick();
+        return mDateTimeFace.lastMillis;
+    }
+
+    @Benchmark
+    public long secondTickSnapshot() {
+        mSnapshotWatch.onSecondTick();
+        return mSnapshotFace.lastMillis;
+    }
+
+    @Benchmark
+    public long secondTickSnapshotWithMetrics() {
+        mMetricsWatch.onSecondTick();
+        return mMetricsFace.lastMillis;
+    }
+
+    @Benchmark
+    public long secondTickSnapshotSixZones() {
+        mWorldClockWatch.onSecondTick();
+        return mWorldClockFace.lastMillis;
+    }
+
+    @Benchmark
+    public long minuteTickSnapshot() {
+        mSnapshotWatch.onTimeTick();
+        return mSnapshotFace.lastMillis;
+    }
+
+    @Benchmark
+    public long formatSettingsChanged() {
+        mSnapshotWatch.onFormatSettingsChanged();
+        return mSnapshotFace.lastMillis;
+    }
+}
@@ -0,0 +1,50 @@
+package com.twotoasters.watchface.gears.widget;
+
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving the UTC offset for a tick through the {@link ZoneCache},
+ * next to looking the zone up on every tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoneBenchmark {
+
+    private static final String ZONE_ID = "Europe/Berlin";
+
+    private final ZoneCache mZoneCache = new ZoneCache(ZONE_ID);
+    private long mMillis;
+
+    @Setup
+    public void setUp() {
+        mMillis = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public int zoneCacheOffset() {
+        mMillis += 1000;
+        return mZoneCache.getOffset(mMillis);
+    }
+
+    @Benchmark
+    public int forIdOffset() {
+        mMillis += 1000;
+        return DateTimeZone.forID(ZONE_ID).getOffset(mMillis);
+    }
+}
@@ -0,0 +1,10 @@
+package android.app;
+
+import android.content.Context;
+
+public class Activity extends Context {
+
+    public boolean isDestroyed() {
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package android.app;
+
+/**
+ * Stand-in that records how many alarms were set.
+ */
+public class AlarmManager {
+
+    public static final int RTC_WAKEUP = 0;
+
+    public int setCount;
+
+    public void setExact(int type, long triggerAtMillis, PendingIntent operation) {
+        setCount++;
+    }
+
+    public void setWindow(int type, long windowStartMillis, long windowLengthMillis, PendingIntent operation) {
+        setCount++;
+    }
+
+    public void setRepeating(int type, long triggerAtMillis, long intervalMillis, PendingIntent operation) {
+        setCount++;
+    }
+
+    public void cancel(PendingIntent operation) {
+    }
+}
@@ -0,0 +1,21 @@
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+public final class PendingIntent {
+
+    private final Intent mIntent;
+
+    private PendingIntent(Intent intent) {
+        mIntent = intent;
+    }
+
+    public static PendingIntent getBroadcast(Context context, int requestCode, Intent intent, int flags) {
+        return new PendingIntent(intent);
+    }
+
+    public Intent getIntent() {
+        return mIntent;
+    }
+}
@@ -0,0 +1,13 @@
+package android.content;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+
+public class ContentResolver {
+
+    public final void registerContentObserver(Uri uri, boolean notifyForDescendents, ContentObserver observer) {
+    }
+
+    public final void unregisterContentObserver(ContentObserver observer) {
+    }
+}
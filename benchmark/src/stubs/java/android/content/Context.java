@@ -0,0 +1,42 @@
+package android.content;
+
+import android.app.AlarmManager;
+import android.content.res.Resources;
+import android.os.Handler;
+
+/**
+ * Stand-in for the framework context. Receivers are accepted but never called;
+ * benchmarks drive the library's handlers directly.
+ */
+public class Context {
+
+    public static final String ALARM_SERVICE = "alarm";
+
+    private final Resources mResources = new Resources();
+    private final ContentResolver mContentResolver = new ContentResolver();
+    private final AlarmManager mAlarmManager = new AlarmManager();
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public Resources getResources() {
+        return mResources;
+    }
+
+    public ContentResolver getContentResolver() {
+        return mContentResolver;
+    }
+
+    public Object getSystemService(String name) {
+        return ALARM_SERVICE.equals(name) ? mAlarmManager : null;
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter,
+                                   String broadcastPermission, Handler scheduler) {
+        return null;
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+}
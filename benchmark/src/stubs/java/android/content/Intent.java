@@ -0,0 +1,42 @@
+package android.content;
+
+import java.util.HashMap;
+
+public class Intent {
+
+    public static final String ACTION_TIME_TICK = "android.intent.action.TIME_TICK";
+    public static final String ACTION_TIME_CHANGED = "android.intent.action.TIME_SET";
+    public static final String ACTION_TIMEZONE_CHANGED = "android.intent.action.TIMEZONE_CHANGED";
+    public static final String ACTION_BATTERY_CHANGED = "android.intent.action.BATTERY_CHANGED";
+
+    private final String mAction;
+    private final HashMap<String, Object> mExtras = new HashMap<String, Object>();
+
+    public Intent(String action) {
+        mAction = action;
+    }
+
+    public String getAction() {
+        return mAction;
+    }
+
+    public Intent putExtra(String name, int value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        Object value = mExtras.get(name);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public String getStringExtra(String name) {
+        Object value = mExtras.get(name);
+        return value instanceof String ? (String) value : null;
+    }
+}
@@ -0,0 +1,23 @@
+package android.content;
+
+import java.util.ArrayList;
+
+public class IntentFilter {
+
+    private final ArrayList<String> mActions = new ArrayList<String>();
+
+    public IntentFilter() {
+    }
+
+    public IntentFilter(String action) {
+        addAction(action);
+    }
+
+    public final void addAction(String action) {
+        mActions.add(action);
+    }
+
+    public final boolean hasAction(String action) {
+        return mActions.contains(action);
+    }
+}
@@ -0,0 +1,8 @@
+package android.content.res;
+
+import java.util.Locale;
+
+public final class Configuration {
+
+    public Locale locale = Locale.US;
+}
@@ -0,0 +1,25 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+public class Resources {
+
+    private final Configuration mConfiguration = new Configuration();
+    private final DisplayMetrics mDisplayMetrics = new DisplayMetrics();
+
+    public Configuration getConfiguration() {
+        return mConfiguration;
+    }
+
+    public DisplayMetrics getDisplayMetrics() {
+        return mDisplayMetrics;
+    }
+
+    public String[] getStringArray(int id) {
+        return new String[0];
+    }
+
+    public int getDimensionPixelSize(int id) {
+        return 6;
+    }
+}
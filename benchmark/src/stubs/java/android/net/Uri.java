@@ -0,0 +1,19 @@
+package android.net;
+
+public final class Uri {
+
+    private final String mString;
+
+    private Uri(String string) {
+        mString = string;
+    }
+
+    public static Uri parse(String string) {
+        return new Uri(string);
+    }
+
+    @Override
+    public String toString() {
+        return mString;
+    }
+}
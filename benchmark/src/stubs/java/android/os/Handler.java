@@ -0,0 +1,29 @@
+package android.os;
+
+/**
+ * Stand-in that accepts posted runnables without running them; benchmarks call
+ * the library's tick entry points directly.
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable r) {
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return true;
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable r) {
+    }
+}
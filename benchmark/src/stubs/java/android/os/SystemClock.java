@@ -0,0 +1,14 @@
+package android.os;
+
+public final class SystemClock {
+
+    private static final long START_NANOS = System.nanoTime();
+
+    public static long uptimeMillis() {
+        return (System.nanoTime() - START_NANOS) / 1000000L;
+    }
+
+    public static long elapsedRealtime() {
+        return uptimeMillis();
+    }
+}
@@ -0,0 +1,16 @@
+package android.provider;
+
+import android.net.Uri;
+
+public final class Settings {
+
+    public static final class System {
+
+        public static final String TIME_12_24 = "time_12_24";
+        public static final Uri CONTENT_URI = Uri.parse("content://settings/system");
+
+        public static Uri getUriFor(String name) {
+            return Uri.parse("content://settings/system/" + name);
+        }
+    }
+}
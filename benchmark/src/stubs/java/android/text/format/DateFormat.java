@@ -0,0 +1,13 @@
+package android.text.format;
+
+import android.content.Context;
+
+public class DateFormat {
+
+    /** Benchmarks flip this to simulate the user's 12/24-hour setting. */
+    public static boolean sIs24HourFormat;
+
+    public static boolean is24HourFormat(Context context) {
+        return sIs24HourFormat;
+    }
+}
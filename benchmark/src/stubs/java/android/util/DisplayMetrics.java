@@ -0,0 +1,8 @@
+package android.util;
+
+public class DisplayMetrics {
+
+    public int widthPixels = 320;
+    public int heightPixels = 320;
+    public float density = 1.5f;
+}
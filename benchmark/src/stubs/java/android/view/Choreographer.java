@@ -0,0 +1,23 @@
+package android.view;
+
+/**
+ * Stand-in that never delivers frames; benchmarks drive frames directly.
+ */
+public final class Choreographer {
+
+    private static final Choreographer INSTANCE = new Choreographer();
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    public static Choreographer getInstance() {
+        return INSTANCE;
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.twotoasters.watchface.gears;
+
+public final class R {
+
+    public static final class array {
+        public static final int gears_amoled_models = 1;
+        public static final int gears_round_models = 2;
+        public static final int gears_low_bit_ambient_models = 3;
+    }
+
+    public static final class dimen {
+        public static final int gears_burn_in_shift = 4;
+    }
+}
@@ -0,0 +1,102 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataPipelineTest {
+
+    private static final long START_MILLIS = 1400000000000L;
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+
+    private WatchSimulator mSimulator;
+    private DataPipeline mPipeline;
+    private final ArrayList<List<String>> mDeliveries = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mSimulator = new WatchSimulator(new Context(), START_MILLIS);
+        mPipeline = mSimulator.getTickHub().getDataPipeline();
+        mPipeline.addListener(new IDataListener() {
+            @Override
+            public void onDataChanged(@NonNull List<String> changedKeys) {
+                mDeliveries.add(new ArrayList<>(changedKeys));
+            }
+        });
+    }
+
+    @Test
+    public void providersDueCloseTogetherShareATick() {
+        FakeDataProvider<Integer> weather = new FakeDataProvider<>(1);
+        FakeDataProvider<Integer> steps = new FakeDataProvider<>(1);
+        mPipeline.register("weather", weather, 10 * MINUTE_MILLIS, 0);
+        mPipeline.register("steps", steps, 10 * MINUTE_MILLIS - 30 * 1000L, 0);
+
+        mSimulator.advanceBy(60 * MINUTE_MILLIS);
+        assertEquals(6, weather.getRefreshCount());
+        assertEquals(weather.getRefreshCount(), steps.getRefreshCount());
+        assertEquals(weather.getRefreshCount(), mPipeline.getBatchCount());
+    }
+
+    @Test
+    public void asynchronousValuesAreDeliveredTogether() {
+        FakeDataProvider<Integer> weather = new FakeDataProvider<>(1);
+        FakeDataProvider<Integer> steps = new FakeDataProvider<>(1);
+        weather.setAsync(true);
+        steps.setAsync(true);
+        mPipeline.register("weather", weather, 10 * MINUTE_MILLIS, 0);
+        mPipeline.register("steps", steps, 10 * MINUTE_MILLIS, 0);
+
+        mSimulator.advanceBy(MINUTE_MILLIS);
+        assertTrue(weather.complete());
+        assertTrue(steps.complete());
+        mSimulator.advanceBy(1);
+        assertEquals(1, mDeliveries.size());
+        assertEquals(2, mDeliveries.get(0).size());
+    }
+
+    @Test
+    public void expiredValuesAreEvicted() {
+        FakeDataProvider<Integer> weather = new FakeDataProvider<>(1);
+        mPipeline.register("weather", weather, 10 * MINUTE_MILLIS, 3 * MINUTE_MILLIS);
+
+        mSimulator.advanceBy(MINUTE_MILLIS);
+        assertTrue(mPipeline.hasValue("weather"));
+        weather.setAsync(true);
+        mSimulator.advanceBy(5 * MINUTE_MILLIS);
+        assertFalse(mPipeline.hasValue("weather"));
+        assertEquals(1, mPipeline.getEvictionCount());
+    }
+
+    @Test
+    public void keysRemovedByAListenerAreDeliveredAfterIt() {
+        mPipeline.register("weather", new FakeDataProvider<>(1), 10 * MINUTE_MILLIS, 0);
+        mPipeline.register("steps", new FakeDataProvider<>(1), 10 * MINUTE_MILLIS, 0);
+        final ArrayList<Integer> sizesAfterUnregister = new ArrayList<>();
+        mPipeline.addListener(new IDataListener() {
+            @Override
+            public void onDataChanged(@NonNull List<String> changedKeys) {
+                if (changedKeys.size() == 2) {
+                    mPipeline.unregister("weather");
+                    sizesAfterUnregister.add(changedKeys.size());
+                }
+            }
+        });
+
+        mSimulator.advanceBy(MINUTE_MILLIS);
+        assertEquals(2, mDeliveries.size());
+        assertEquals(2, mDeliveries.get(0).size());
+        assertEquals("weather", mDeliveries.get(1).get(0));
+        assertEquals(1, sizesAfterUnregister.size());
+        assertEquals(2, (int) sizesAfterUnregister.get(0));
+    }
+}
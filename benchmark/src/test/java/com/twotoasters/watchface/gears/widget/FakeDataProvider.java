@@ -0,0 +1,65 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+/**
+ * An in-process {@link DataProvider} with values set by the test, for
+ * simulations with a {@link WatchSimulator}.
+ *
+ * By default every refresh delivers the current value right away. In
+ * asynchronous mode refreshes are held until {@link #complete()}, like a
+ * provider waiting for the phone.
+ */
+public class FakeDataProvider<T> implements DataProvider<T> {
+
+    private T mValue;
+    private boolean mAsync;
+    private Callback<T> mPending;
+    private int mRefreshCount;
+
+    public FakeDataProvider(T value) {
+        mValue = value;
+    }
+
+    /**
+     * Sets the value delivered by the following refreshes.
+     */
+    public void setValue(T value) {
+        mValue = value;
+    }
+
+    public void setAsync(boolean async) {
+        mAsync = async;
+    }
+
+    /**
+     * Delivers the current value to a refresh held in asynchronous mode.
+     *
+     * @return true if a refresh was waiting
+     */
+    public boolean complete() {
+        Callback<T> pending = mPending;
+        mPending = null;
+        if (pending != null) {
+            pending.onData(mValue);
+        }
+        return pending != null;
+    }
+
+    /**
+     * @return the number of times the pipeline asked for a refresh
+     */
+    public int getRefreshCount() {
+        return mRefreshCount;
+    }
+
+    @Override
+    public void refresh(@NonNull Callback<T> callback) {
+        mRefreshCount++;
+        if (mAsync) {
+            mPending = callback;
+        } else {
+            callback.onData(mValue);
+        }
+    }
+}
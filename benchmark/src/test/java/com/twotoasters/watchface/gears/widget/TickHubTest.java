@@ -0,0 +1,102 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.joda.time.DateTime;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TickHubTest {
+
+    private static final long START_MILLIS = 1400000000000L;
+
+    /**
+     * Runs every task a fixed time after it was asked for, like a busy handler.
+     */
+    private static final class LateScheduler implements WatchScheduler {
+
+        private final VirtualClock mClock;
+        private final long mLatenessMillis;
+
+        LateScheduler(VirtualClock clock, long latenessMillis) {
+            mClock = clock;
+            mLatenessMillis = latenessMillis;
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            mClock.postDelayed(runnable, delayMillis + mLatenessMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            mClock.removeCallbacks(runnable);
+        }
+    }
+
+    @Test
+    public void tickCorrectionCancelsSteadyLateness() {
+        assertSettlesOnTime(20);
+        assertSettlesOnTime(60);
+    }
+
+    @Test
+    public void tickerKeepsRunningWhenTheClockGoesBack() {
+        VirtualClock clock = new VirtualClock(START_MILLIS);
+        TickHub tickHub = new TickHub(new Context(), clock, clock);
+        final int[] updates = new int[1];
+        Watch watch = new Watch(new BenchmarkWatchface() {
+            @Override
+            public void onTimeChanged(@NonNull DateTime time) {
+                updates[0]++;
+            }
+        }, tickHub);
+        watch.setTickRate(TickRate.SECOND);
+        watch.onAttachedToWindow();
+        clock.advanceBy(2500);
+
+        // Before ACTION_TIME_CHANGED arrives
+        clock.setCurrentTimeMillis(clock.currentTimeMillis() - 60 * 60 * 1000L);
+        updates[0] = 0;
+        clock.advanceBy(5000);
+        assertTrue("Only " + updates[0] + " updates in 5 s", updates[0] >= 4);
+    }
+
+    @Test
+    public void ambientModeKeepsAnExplicitSecondTickRate() {
+        VirtualClock clock = new VirtualClock(START_MILLIS);
+        TickHub tickHub = new TickHub(new Context(), clock, clock);
+        Watch watch = new Watch(new BenchmarkWatchface(), tickHub);
+        watch.setAmbientModeEnabled(true);
+        watch.setFormat12Hour("h:mm:ss");
+        watch.setFormat24Hour("HH:mm:ss");
+        watch.onAttachedToWindow();
+        watch.onActiveStateChanged(false);
+        assertEquals(TickRate.MINUTE, watch.getEffectiveTickRate());
+
+        watch.setTickRate(TickRate.SECOND);
+        assertEquals(TickRate.SECOND, watch.getEffectiveTickRate());
+    }
+
+    private static void assertSettlesOnTime(long latenessMillis) {
+        VirtualClock clock = new VirtualClock(START_MILLIS);
+        TickHub tickHub = new TickHub(new Context(), clock, new LateScheduler(clock, latenessMillis));
+        Watch watch = new Watch(new BenchmarkWatchface(), tickHub);
+        watch.setTickRate(TickRate.SECOND);
+        watch.onAttachedToWindow();
+
+        clock.advanceBy(60 * 1000L);
+        long worst = 0;
+        for (int i = 0; i < 10; i++) {
+            clock.advanceBy(1000);
+            worst = Math.max(worst, tickHub.getLastTickLateness());
+        }
+        // The correction moves in quarters, so a few milliseconds may remain
+        assertTrue("Ticks " + worst + " ms late with a " + latenessMillis + " ms late handler",
+                worst <= 3);
+    }
+}
@@ -0,0 +1,154 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class WatchSessionTest {
+
+    private static final long START_MILLIS = 1400000000000L;
+
+    private static final class TestActivity extends Activity {
+        boolean destroyed;
+
+        @Override
+        public boolean isDestroyed() {
+            return destroyed;
+        }
+    }
+
+    private static class CountingWatchface extends BenchmarkWatchface {
+        final TestActivity activity;
+        int updates;
+
+        CountingWatchface(TestActivity activity) {
+            this.activity = activity;
+        }
+
+        @Override
+        public void onTimeChanged(@NonNull DateTime time) {
+            updates++;
+        }
+
+        @Override
+        public Context getContext() {
+            return activity;
+        }
+    }
+
+    private static final class TestApplication extends Context implements WatchSession.Owner {
+        final WatchSession session = new WatchSession();
+
+        @NonNull
+        @Override
+        public WatchSession getWatchSession() {
+            return session;
+        }
+    }
+
+    @Test
+    public void activityRetainsItsSessionWithoutAnApplicationSession() {
+        TestActivity activity = new TestActivity();
+        WatchSession session = WatchSession.forActivity(activity, null);
+        Watch watch = session.obtain(new CountingWatchface(activity), "face");
+        activity.destroyed = true;
+
+        // What the recreated activity gets from getLastNonConfigurationInstance()
+        TestActivity recreated = new TestActivity();
+        WatchSession retained = WatchSession.forActivity(recreated, session);
+        assertSame(session, retained);
+        assertSame(watch, retained.obtain(new CountingWatchface(recreated), "face"));
+    }
+
+    @Test
+    public void activityUsesTheApplicationSession() {
+        final TestApplication application = new TestApplication();
+        Activity activity = new Activity() {
+            @Override
+            public Context getApplicationContext() {
+                return application;
+            }
+        };
+        assertSame(application.session, WatchSession.forActivity(activity, null));
+        assertSame(application.session, WatchSession.forActivity(activity, new WatchSession()));
+    }
+
+    @Test
+    public void reboundWatchReportsTheBatteryOnce() {
+        WatchSimulator simulator = new WatchSimulator(new Context(), START_MILLIS);
+        WatchSession session = new WatchSession(simulator.getTickHub());
+        TestActivity activity = new TestActivity();
+        Watch watch = session.obtain(new CountingWatchface(activity), "face");
+        watch.onAttachedToWindow();
+        simulator.changeBatteryLevel(80);
+        watch.onDetachedFromWindow();
+        activity.destroyed = true;
+        long received = watch.getBatteryState().getReceivedCount();
+
+        final int[] reports = new int[1];
+        CountingWatchface recreated = new CountingWatchface(new TestActivity()) {
+            @Override
+            public void onBatteryLevelChanged(int percentage) {
+                reports[0]++;
+            }
+        };
+        assertSame(watch, session.obtain(recreated, "face"));
+        watch.onAttachedToWindow();
+        assertEquals(1, reports[0]);
+        assertEquals(received, watch.getBatteryState().getReceivedCount());
+    }
+
+    @Test
+    public void liveWatchfacesNeverShareAWatch() {
+        WatchSimulator simulator = new WatchSimulator(new Context(), START_MILLIS);
+        WatchSession session = new WatchSession(simulator.getTickHub());
+        TestActivity activity = new TestActivity();
+        CountingWatchface first = new CountingWatchface(activity);
+        CountingWatchface second = new CountingWatchface(activity);
+
+        Watch firstWatch = session.obtain(first, "face");
+        Watch secondWatch = session.obtain(second, "face");
+        assertNotSame(firstWatch, secondWatch);
+        assertSame(firstWatch, session.getWatch(first));
+
+        for (Watch watch : new Watch[] { firstWatch, secondWatch }) {
+            watch.setTickRate(TickRate.SECOND);
+            watch.onAttachedToWindow();
+        }
+        first.updates = 0;
+        second.updates = 0;
+        simulator.advanceBy(5000);
+        assertEquals(5, first.updates);
+        assertEquals(5, second.updates);
+    }
+
+    @Test
+    public void reusedWatchCatchesUpOnZoneChange() {
+        WatchSimulator simulator = new WatchSimulator(new Context(), START_MILLIS);
+        WatchSession session = new WatchSession(simulator.getTickHub());
+        TestActivity activity = new TestActivity();
+        Watch watch = session.obtain(new CountingWatchface(activity), "face");
+        watch.onAttachedToWindow();
+        simulator.changeTimeZone("Asia/Tokyo");
+        simulator.advanceBy(1000);
+        watch.onDetachedFromWindow();
+        activity.destroyed = true;
+
+        simulator.changeTimeZone("America/New_York");
+        CountingWatchface recreated = new CountingWatchface(new TestActivity());
+        assertSame(watch, session.obtain(recreated, "face"));
+        watch.onAttachedToWindow();
+
+        long now = simulator.getClock().currentTimeMillis();
+        assertEquals(DateTimeZone.forID("America/New_York").getOffset(now),
+                watch.getWatchTime().getOffset());
+    }
+}
@@ -1,11 +1,20 @@
 package com.twotoasters.watchface.gears;
 
 import android.app.Application;
+import android.content.res.Configuration;
 
-public class GearsWatchfaceApp extends Application {
+import com.twotoasters.watchface.gears.util.DeviceProfile;
+import com.twotoasters.watchface.gears.widget.TickHub;
+import com.twotoasters.watchface.gears.widget.WatchSession;
+import com.twotoasters.watchface.gears.widget.WatchWarmup;
+
+public class GearsWatchfaceApp extends Application implements WatchSession.Owner {
 
     private static GearsWatchfaceApp app;
 
+    private TickHub tickHub;
+    private WatchSession watchSession;
+
     public static GearsWatchfaceApp getInstance() {
         return app;
     }
@@ -14,5 +23,33 @@ public class GearsWatchfaceApp extends Application {
     public void onCreate() {
         super.onCreate();
         app = this;
+        WatchWarmup.start(this);
+        DeviceProfile.update(this);
+        tickHub = TickHub.getInstance(this);
+        watchSession = new WatchSession(tickHub);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        DeviceProfile.update(this);
+    }
+
+    /**
+     * Returns the hub shared by every {@link com.twotoasters.watchface.gears.widget.Watch}
+     * in this process.
+     */
+    public TickHub getTickHub() {
+        return tickHub;
+    }
+
+    /**
+     * Returns the session that keeps every watchface's
+     * {@link com.twotoasters.watchface.gears.widget.Watch} while the watchface is
+     * recreated.
+     */
+    @Override
+    public WatchSession getWatchSession() {
+        return watchSession;
     }
 }
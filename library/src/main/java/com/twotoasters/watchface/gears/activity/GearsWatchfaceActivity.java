@@ -4,13 +4,20 @@ import android.app.Activity;
 import android.os.Bundle;
 
 import com.twotoasters.watchface.gears.widget.IWatchface;
+import com.twotoasters.watchface.gears.widget.Watch;
+import com.twotoasters.watchface.gears.widget.WatchSession;
 
-public abstract class GearsWatchfaceActivity extends Activity {
+public abstract class GearsWatchfaceActivity extends Activity implements WatchSession.Owner {
 
     private IWatchface watchface;
+    private WatchSession watchSession;
 
     @Override
+    @SuppressWarnings("deprecation")
     protected void onCreate(Bundle savedInstanceState) {
+        // Must be in place before the layout inflates the watchface
+        watchSession = WatchSession.forActivity(this, getLastNonConfigurationInstance());
+
         super.onCreate(savedInstanceState);
         setContentView(getLayoutResId());
         watchface = getWatchface();
@@ -22,13 +29,51 @@ public abstract class GearsWatchfaceActivity extends Activity {
     @Override
     protected void onResume() {
         super.onResume();
-        watchface.onActiveStateChanged(true);
+        setActive(true);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        watchface.onActiveStateChanged(false);
+        setActive(false);
+    }
+
+    private void setActive(boolean active) {
+        watchface.onActiveStateChanged(active);
+        // Stops continuous updates even if the face does not delegate the change
+        Watch watch = watchSession.getWatch(watchface);
+        if (watch != null) {
+            watch.onActiveStateChanged(active);
+        }
+    }
+
+    /**
+     * Keeps the session across recreation when the application does not keep one.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public Object onRetainNonConfigurationInstance() {
+        return watchSession;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing()) {
+            Watch watch = watchSession.getWatch(watchface);
+            if (watch != null) {
+                watchSession.release(watch);
+            }
+        }
+    }
+
+    /**
+     * Returns the session that keeps the watches of this activity's watchfaces
+     * across recreation. Uses the application's session if it has one.
+     */
+    @Override
+    public WatchSession getWatchSession() {
+        return watchSession;
     }
 
     protected abstract int getLayoutResId();
@@ -0,0 +1,117 @@
+package com.twotoasters.watchface.gears.util;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.DisplayMetrics;
+
+import com.twotoasters.watchface.gears.R;
+
+import java.util.HashMap;
+
+/**
+ * What the library knows about the watch it runs on, computed once and kept
+ * as plain fields so drawing and layout code can read it for free.
+ *
+ * Screen sizes come from the display metrics. Screen type and recommended
+ * ambient behavior come from model tables in the library resources
+ * ({@code gears_amoled_models}, {@code gears_round_models} and
+ * {@code gears_low_bit_ambient_models}), keyed by {@link Build#MODEL}. Apps can
+ * add devices by overriding those arrays.
+ *
+ * {@link com.twotoasters.watchface.gears.GearsWatchfaceApp} computes the
+ * profile on start and again on every configuration change.
+ */
+public final class DeviceProfile {
+
+    private static final int AMOLED = 1;
+    private static final int ROUND = 1 << 1;
+    private static final int LOW_BIT_AMBIENT = 1 << 2;
+
+    private static volatile DeviceProfile sProfile;
+    private static HashMap<String, Integer> sModelFlags; // guarded by DeviceProfile.class
+
+    /** {@link Build#MODEL} */
+    public final String model;
+
+    public final int widthPx;
+    public final int heightPx;
+    public final float density;
+    public final float widthDp;
+    public final float heightDp;
+
+    public final boolean round;
+    public final boolean amoled;
+
+    /** Ambient mode can only show a few colors; draw without anti-aliasing. */
+    public final boolean lowBitAmbient;
+
+    /** Ambient mode should avoid large lit areas and move its content periodically. */
+    public final boolean burnInProtection;
+
+    /** How far to move content for burn-in protection, or 0 if not needed. */
+    public final int burnInShiftPx;
+
+    /**
+     * Returns the profile of this device, computing it on first use.
+     */
+    @NonNull
+    public static DeviceProfile get(@NonNull Context context) {
+        DeviceProfile profile = sProfile;
+        return profile != null ? profile : update(context);
+    }
+
+    /**
+     * @return the profile if it was already computed, or null
+     */
+    public static DeviceProfile peek() {
+        return sProfile;
+    }
+
+    /**
+     * Computes the profile again, e.g. after a configuration change, and
+     * publishes it for {@link #get(Context)}.
+     */
+    @NonNull
+    public static DeviceProfile update(@NonNull Context context) {
+        DeviceProfile profile = new DeviceProfile(context.getResources(), Build.MODEL);
+        sProfile = profile;
+        return profile;
+    }
+
+    private DeviceProfile(Resources resources, String model) {
+        DisplayMetrics displayMetrics = resources.getDisplayMetrics();
+        this.model = model;
+        widthPx = displayMetrics.widthPixels;
+        heightPx = displayMetrics.heightPixels;
+        density = displayMetrics.density;
+        widthDp = widthPx / density;
+        heightDp = heightPx / density;
+
+        int flags = getModelFlags(resources, model);
+        round = (flags & ROUND) != 0;
+        amoled = (flags & AMOLED) != 0;
+        lowBitAmbient = (flags & LOW_BIT_AMBIENT) != 0;
+        burnInProtection = amoled;
+        burnInShiftPx = amoled ? resources.getDimensionPixelSize(R.dimen.gears_burn_in_shift) : 0;
+    }
+
+    private static synchronized int getModelFlags(Resources resources, String model) {
+        if (sModelFlags == null) {
+            sModelFlags = new HashMap<>();
+            addModels(resources, R.array.gears_amoled_models, AMOLED);
+            addModels(resources, R.array.gears_round_models, ROUND);
+            addModels(resources, R.array.gears_low_bit_ambient_models, LOW_BIT_AMBIENT);
+        }
+        Integer flags = sModelFlags.get(model);
+        return flags != null ? flags : 0;
+    }
+
+    private static void addModels(Resources resources, int arrayId, int flag) {
+        for (String model : resources.getStringArray(arrayId)) {
+            Integer flags = sModelFlags.get(model);
+            sModelFlags.put(model, flags != null ? flags | flag : flag);
+        }
+    }
+}
@@ -1,30 +1,39 @@
 package com.twotoasters.watchface.gears.util;
 
 import android.content.Context;
-import android.os.Build;
-import android.util.DisplayMetrics;
 import android.util.Pair;
 
 import java.lang.SuppressWarnings;
-import java.util.ArrayList;
 
 @SuppressWarnings("unused")
 public class DeviceUtils {
 
-    private static final ArrayList<String> AMOLED_MODELS;
-    static {
-        AMOLED_MODELS = new ArrayList<String>();
-        AMOLED_MODELS.add("Gear Live");
+    /**
+     * @return true if the screen is AMOLED, according to the model tables of the
+     *         {@link DeviceProfile}
+     */
+    public static boolean hasAmoledScreen(Context context) {
+        return DeviceProfile.get(context).amoled;
     }
 
+    /**
+     * @deprecated false until a {@link DeviceProfile} was computed, so the answer
+     *             depends on call order; use {@link #hasAmoledScreen(Context)} or
+     *             {@link DeviceProfile#amoled} instead
+     */
+    @Deprecated
     public static boolean hasAmoledScreen() {
-        return AMOLED_MODELS.contains(Build.MODEL);
+        DeviceProfile profile = DeviceProfile.peek();
+        return profile != null && profile.amoled;
     }
 
+    /**
+     * @deprecated allocates on every call; read {@link DeviceProfile#widthDp} and
+     *             {@link DeviceProfile#heightDp} instead
+     */
+    @Deprecated
     public static Pair<Float, Float> getScreenDimensDp(Context context) {
-        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
-        float dpWidth = displayMetrics.widthPixels / displayMetrics.density;
-        float dpHeight = displayMetrics.heightPixels / displayMetrics.density;
-        return new Pair(dpWidth, dpHeight);
+        DeviceProfile profile = DeviceProfile.get(context);
+        return new Pair<>(profile.widthDp, profile.heightDp);
     }
 }
@@ -0,0 +1,112 @@
+package com.twotoasters.watchface.gears.widget;
+
+import com.twotoasters.watchface.gears.util.DeviceProfile;
+
+/**
+ * How a watchface should draw while it is dimmed, as decided by its
+ * {@link Watch}.
+ *
+ * In ambient mode the face should draw in monochrome on black, and without
+ * anti-aliasing when {@link #isLowBit()} is set. On screens that need burn-in
+ * protection, everything should be drawn moved by
+ * ({@link #getOffsetX()}, {@link #getOffsetY()}), which walks around a small
+ * square once per minute so no pixel stays lit for long. {@link LayerCompositor}
+ * does all of this for the layers it draws.
+ *
+ * The watch ticks once a minute in ambient mode, unless the face asked for
+ * seconds through {@link Watch#setTickRate(TickRate)} or
+ * {@link Watch#setMinTickRate(TickRate)}, or handles seconds in dim mode.
+ *
+ * @see Watch#setAmbientModeEnabled(boolean)
+ */
+public final class AmbientMode {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    // Visits the center and its eight neighbours
+    private static final int[] SHIFT_X = { 0, 1, 1, 0, -1, -1, -1, 0, 1 };
+    private static final int[] SHIFT_Y = { 0, 0, 1, 1, 1, 0, -1, -1, -1 };
+
+    private boolean mAmbient;
+    private boolean mLowBit;
+    private boolean mBurnInProtection;
+    private int mShiftPx;
+    private int mOffsetX;
+    private int mOffsetY;
+
+    /**
+     * @return true while the watchface should use its ambient style
+     */
+    public boolean isAmbient() {
+        return mAmbient;
+    }
+
+    /**
+     * @return true if the screen only shows a few colors in ambient mode
+     */
+    public boolean isLowBit() {
+        return mAmbient && mLowBit;
+    }
+
+    /**
+     * @return true if content is being moved to protect the screen from burn-in
+     */
+    public boolean isBurnInProtection() {
+        return mAmbient && mBurnInProtection;
+    }
+
+    /**
+     * @return the horizontal burn-in offset in pixels
+     */
+    public int getOffsetX() {
+        return mOffsetX;
+    }
+
+    /**
+     * @return the vertical burn-in offset in pixels
+     */
+    public int getOffsetY() {
+        return mOffsetY;
+    }
+
+    /**
+     * Copies another mode, e.g. to hand it to a render thread.
+     */
+    public void set(AmbientMode other) {
+        mAmbient = other.mAmbient;
+        mLowBit = other.mLowBit;
+        mBurnInProtection = other.mBurnInProtection;
+        mShiftPx = other.mShiftPx;
+        mOffsetX = other.mOffsetX;
+        mOffsetY = other.mOffsetY;
+    }
+
+    /**
+     * @param profile the device, or null if unknown
+     * @return true if the face has to switch style
+     */
+    boolean setAmbient(boolean ambient, DeviceProfile profile, long millis) {
+        boolean lowBit = profile != null && profile.lowBitAmbient;
+        boolean changed = ambient != mAmbient || (ambient && lowBit != mLowBit);
+        mAmbient = ambient;
+        mLowBit = lowBit;
+        mBurnInProtection = profile != null && profile.burnInProtection;
+        mShiftPx = profile != null ? profile.burnInShiftPx : 0;
+        updateOffset(millis);
+        return changed;
+    }
+
+    /**
+     * Moves the burn-in offset on minute boundaries.
+     */
+    void updateOffset(long millis) {
+        if (mAmbient && mBurnInProtection) {
+            int step = (int) (((millis / MILLIS_PER_MINUTE) % SHIFT_X.length + SHIFT_X.length) % SHIFT_X.length);
+            mOffsetX = SHIFT_X[step] * mShiftPx;
+            mOffsetY = SHIFT_Y[step] * mShiftPx;
+        } else {
+            mOffsetX = 0;
+            mOffsetY = 0;
+        }
+    }
+}
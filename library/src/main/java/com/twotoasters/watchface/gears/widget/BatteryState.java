@@ -0,0 +1,156 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.os.BatteryManager;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the battery of the device and decides which changes are worth
+ * telling the watchface about.
+ *
+ * {@link android.content.Intent#ACTION_BATTERY_CHANGED} is broadcast for
+ * voltage and temperature changes as well as level changes. A {@link Watch}
+ * feeds every broadcast through its tracker and only calls
+ * {@link IWatchface#onBatteryLevelChanged(int)} when the normalized percentage
+ * moves into another step, crosses a threshold, or the charging state flips.
+ */
+public class BatteryState {
+
+    private int mStep = 1;
+    private int[] mThresholds = new int[0];
+
+    private int mPercentage = -1;
+    private boolean mCharging;
+
+    private int mDispatchedPercentage = -1;
+    private boolean mDispatchedCharging;
+
+    private long mReceivedCount;
+    private long mSuppressedCount;
+
+    /**
+     * Converts a raw level to a percentage.
+     *
+     * @param level {@link BatteryManager#EXTRA_LEVEL}
+     * @param scale {@link BatteryManager#EXTRA_SCALE}, or a non-positive value if unknown
+     */
+    public static int toPercentage(int level, int scale) {
+        if (scale <= 0) {
+            return Math.max(0, Math.min(100, level));
+        }
+        return Math.max(0, Math.min(100, Math.round(level * 100f / scale)));
+    }
+
+    /**
+     * @param plugged {@link BatteryManager#EXTRA_PLUGGED}
+     * @param status  {@link BatteryManager#EXTRA_STATUS}
+     */
+    public static boolean isCharging(int plugged, int status) {
+        return plugged != 0 || status == BatteryManager.BATTERY_STATUS_CHARGING;
+    }
+
+    /**
+     * Only report percentage changes that move into another multiple of the
+     * given step, e.g. 5 to report 100, 95, 90... Defaults to 1.
+     */
+    public void setStep(int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive");
+        }
+        mStep = step;
+    }
+
+    public int getStep() {
+        return mStep;
+    }
+
+    /**
+     * Also report whenever the percentage crosses one of the given levels, e.g.
+     * 15 to switch to a low battery style. Thresholds apply in addition to the
+     * step.
+     */
+    public void setThresholds(@NonNull int... thresholds) {
+        mThresholds = thresholds.clone();
+        Arrays.sort(mThresholds);
+    }
+
+    /**
+     * @return the battery level in percent, or -1 if not known yet
+     */
+    public int getPercentage() {
+        return mPercentage;
+    }
+
+    public boolean isCharging() {
+        return mCharging;
+    }
+
+    /**
+     * @return the number of battery broadcasts received
+     */
+    public long getReceivedCount() {
+        return mReceivedCount;
+    }
+
+    /**
+     * @return the number of battery broadcasts that were not reported to the
+     *         watchface because nothing it cares about changed
+     */
+    public long getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    /**
+     * Records a battery broadcast.
+     *
+     * @return true if the change should be reported to the watchface
+     */
+    boolean update(int level, int scale, int plugged, int status) {
+        mReceivedCount++;
+        boolean changed = apply(level, scale, plugged, status);
+        if (!changed) {
+            mSuppressedCount++;
+        }
+        return changed;
+    }
+
+    /**
+     * Records a battery state replayed by the {@link TickHub} to a watch that
+     * attaches. Not counted as a broadcast.
+     *
+     * @return true if the change should be reported to the watchface
+     */
+    boolean replay(int level, int scale, int plugged, int status) {
+        return apply(level, scale, plugged, status);
+    }
+
+    private boolean apply(int level, int scale, int plugged, int status) {
+        mPercentage = toPercentage(level, scale);
+        mCharging = isCharging(plugged, status);
+
+        boolean changed = mDispatchedPercentage < 0
+                || mCharging != mDispatchedCharging
+                || mPercentage / mStep != mDispatchedPercentage / mStep
+                || band(mPercentage) != band(mDispatchedPercentage);
+
+        if (changed) {
+            mDispatchedPercentage = mPercentage;
+            mDispatchedCharging = mCharging;
+        }
+        return changed;
+    }
+
+    /**
+     * @return the number of thresholds at or below the given percentage
+     */
+    private int band(int percentage) {
+        int band = 0;
+        for (int threshold : mThresholds) {
+            if (percentage >= threshold) {
+                band++;
+            }
+        }
+        return band;
+    }
+}
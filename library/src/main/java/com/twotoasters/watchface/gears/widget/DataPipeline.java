@@ -0,0 +1,324 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Refreshes {@link DataProvider}s and caches their values for all watchfaces
+ * attached to a {@link TickHub}.
+ *
+ * Each provider is registered with a refresh interval and a time to live. The
+ * pipeline never wakes the device on its own: refreshes are batched onto the
+ * ticks and dim mode wakeups the hub already delivers, and a provider that is
+ * due shortly after a tick is refreshed on that tick so that it shares the
+ * wakeup with the others. Values that outlive their time to live are evicted.
+ *
+ * Listeners receive one {@link IDataListener#onDataChanged(List)} per batch,
+ * listing every value that changed or expired. Values that are delivered later
+ * by asynchronous providers are coalesced the same way. A delivered value that
+ * equals the cached one is not reported.
+ *
+ * A {@link WatchSimulator} makes the pipeline testable with providers that
+ * deliver values set by the test. All methods must be called on the main
+ * thread.
+ */
+public class DataPipeline {
+
+    private final class Registration implements DataProvider.Callback<Object> {
+        final String key;
+        final DataProvider<Object> provider;
+        final long intervalMillis;
+        final long ttlMillis;
+
+        Object value;
+        boolean hasValue;
+        long updatedAt;
+        long nextRefresh;
+        long refreshStartedAt;
+        boolean inFlight;
+        boolean registered = true;
+
+        Registration(String key, DataProvider<Object> provider, long intervalMillis, long ttlMillis) {
+            this.key = key;
+            this.provider = provider;
+            this.intervalMillis = intervalMillis;
+            this.ttlMillis = ttlMillis;
+        }
+
+        @Override
+        public void onData(Object value) {
+            if (registered) {
+                onValue(this, value);
+            }
+        }
+    }
+
+    private final WatchClock mClock;
+    private final WatchScheduler mScheduler;
+
+    private final HashMap<String, Registration> mRegistrations = new HashMap<>();
+    private Registration[] mRegistrationList = new Registration[0];
+    private final ArrayList<IDataListener> mListeners = new ArrayList<>();
+
+    // Changes made while listeners are called are collected in the other list
+    private ArrayList<String> mChangedKeys = new ArrayList<>();
+    private List<String> mChangedKeysView = Collections.unmodifiableList(mChangedKeys);
+    private ArrayList<String> mDeliveredKeys = new ArrayList<>();
+    private List<String> mDeliveredKeysView = Collections.unmodifiableList(mDeliveredKeys);
+    private boolean mDelivering;
+    private boolean mInBatch;
+    private boolean mDeliveryPosted;
+
+    private long mBatchCount;
+    private long mRefreshCount;
+    private long mEvictionCount;
+
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            mDeliveryPosted = false;
+            deliver();
+        }
+    };
+
+    DataPipeline(WatchClock clock, WatchScheduler scheduler) {
+        mClock = clock;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Registers a provider, replacing any registered under the same key. It is
+     * first refreshed on the next tick.
+     *
+     * @param intervalMillis how often to refresh the value
+     * @param ttlMillis      how long a value stays valid after it was delivered,
+     *                       or 0 to keep it until it is replaced
+     */
+    @SuppressWarnings("unchecked")
+    public void register(@NonNull String key, @NonNull DataProvider<?> provider,
+                         long intervalMillis, long ttlMillis) {
+        if (intervalMillis <= 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Interval must be positive and TTL not negative");
+        }
+        unregister(key);
+        mRegistrations.put(key, new Registration(key, (DataProvider<Object>) provider,
+                intervalMillis, ttlMillis));
+        updateRegistrationList();
+    }
+
+    /**
+     * Removes a provider and evicts its cached value.
+     */
+    public void unregister(@NonNull String key) {
+        Registration registration = mRegistrations.remove(key);
+        if (registration != null) {
+            registration.registered = false;
+            updateRegistrationList();
+            if (registration.hasValue) {
+                markChanged(key);
+                deliver();
+            }
+        }
+    }
+
+    public void addListener(@NonNull IDataListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeListener(@NonNull IDataListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return the cached value of the provider, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getValue(@NonNull String key) {
+        Registration registration = mRegistrations.get(key);
+        return registration != null ? (T) registration.value : null;
+    }
+
+    /**
+     * @return true if a value of the provider is cached
+     */
+    public boolean hasValue(@NonNull String key) {
+        Registration registration = mRegistrations.get(key);
+        return registration != null && registration.hasValue;
+    }
+
+    /**
+     * @return the time the cached value was delivered, or 0 if there is none
+     */
+    public long getUpdatedAt(@NonNull String key) {
+        Registration registration = mRegistrations.get(key);
+        return registration != null && registration.hasValue ? registration.updatedAt : 0;
+    }
+
+    /**
+     * Refreshes the provider on the next tick, regardless of its interval.
+     */
+    public void requestRefresh(@NonNull String key) {
+        Registration registration = mRegistrations.get(key);
+        if (registration != null) {
+            registration.nextRefresh = 0;
+        }
+    }
+
+    /**
+     * Drops all cached values, e.g. when memory is low. Providers are refreshed
+     * on the next tick.
+     */
+    public void evictAll() {
+        for (Registration registration : mRegistrationList) {
+            if (registration.hasValue) {
+                evict(registration);
+            }
+            registration.nextRefresh = 0;
+        }
+        deliver();
+    }
+
+    /**
+     * @return the number of ticks on which at least one provider was refreshed
+     */
+    public long getBatchCount() {
+        return mBatchCount;
+    }
+
+    /**
+     * @return the number of provider refreshes
+     */
+    public long getRefreshCount() {
+        return mRefreshCount;
+    }
+
+    /**
+     * @return the number of values evicted because they expired
+     */
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Called by the hub on every tick and wakeup it delivers.
+     */
+    void onTick() {
+        Registration[] registrations = mRegistrationList;
+        if (registrations.length == 0) {
+            return;
+        }
+
+        long now = mClock.currentTimeMillis();
+        boolean due = false;
+        for (Registration registration : registrations) {
+            if (registration.hasValue && registration.ttlMillis > 0
+                    && now - registration.updatedAt >= registration.ttlMillis) {
+                evict(registration);
+                mEvictionCount++;
+            }
+            due |= canRefresh(registration, now) && now >= registration.nextRefresh;
+        }
+
+        if (due) {
+            // Providers due soon join the batch rather than wake up again for it later
+            mBatchCount++;
+            mInBatch = true;
+            for (Registration registration : registrations) {
+                if (canRefresh(registration, now)
+                        && now >= registration.nextRefresh - registration.intervalMillis / 10) {
+                    refresh(registration, now);
+                }
+            }
+            mInBatch = false;
+        }
+        deliver();
+    }
+
+    /**
+     * @return false while a refresh is in flight; one that never delivered is
+     *         given up after an interval
+     */
+    private static boolean canRefresh(Registration registration, long now) {
+        return !registration.inFlight
+                || now - registration.refreshStartedAt >= registration.intervalMillis;
+    }
+
+    private void refresh(Registration registration, long now) {
+        registration.inFlight = true;
+        registration.refreshStartedAt = now;
+        // Keep the cadence when refreshing early
+        registration.nextRefresh = Math.max(now, registration.nextRefresh) + registration.intervalMillis;
+        mRefreshCount++;
+        registration.provider.refresh(registration);
+    }
+
+    private void onValue(Registration registration, Object value) {
+        registration.inFlight = false;
+        registration.updatedAt = mClock.currentTimeMillis();
+        if (registration.hasValue && (value == null
+                ? registration.value == null : value.equals(registration.value))) {
+            return;
+        }
+
+        registration.value = value;
+        registration.hasValue = true;
+        markChanged(registration.key);
+
+        if (!mInBatch && !mDeliveryPosted) {
+            // Values delivered together by asynchronous providers share one callback
+            mDeliveryPosted = true;
+            mScheduler.postDelayed(mDelivery, 0);
+        }
+    }
+
+    private void evict(Registration registration) {
+        registration.value = null;
+        registration.hasValue = false;
+        markChanged(registration.key);
+    }
+
+    private void markChanged(String key) {
+        if (!mChangedKeys.contains(key)) {
+            mChangedKeys.add(key);
+        }
+    }
+
+    private void deliver() {
+        if (mDelivering || mChangedKeys.isEmpty()) {
+            return;
+        }
+
+        ArrayList<String> keys = mChangedKeys;
+        List<String> keysView = mChangedKeysView;
+        mChangedKeys = mDeliveredKeys;
+        mChangedKeysView = mDeliveredKeysView;
+        mDeliveredKeys = keys;
+        mDeliveredKeysView = keysView;
+
+        mDelivering = true;
+        try {
+            for (int i = 0; i < mListeners.size(); i++) {
+                mListeners.get(i).onDataChanged(keysView);
+            }
+        } finally {
+            keys.clear();
+            mDelivering = false;
+        }
+
+        if (!mChangedKeys.isEmpty() && !mDeliveryPosted) {
+            // Changed by a listener; reported after this callback returns
+            mDeliveryPosted = true;
+            mScheduler.postDelayed(mDelivery, 0);
+        }
+    }
+
+    private void updateRegistrationList() {
+        mRegistrationList = mRegistrations.values().toArray(new Registration[mRegistrations.size()]);
+    }
+}
@@ -0,0 +1,24 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A source of non-time data shown by watchfaces, such as weather, steps or the
+ * next calendar event.
+ *
+ * Providers are registered with a {@link DataPipeline}, which decides when to
+ * refresh them and caches what they deliver.
+ */
+public interface DataProvider<T> {
+
+    /**
+     * Called by the pipeline, on the main thread, when the value should be
+     * refreshed. The provider may deliver the value right away or later, but must
+     * deliver it on the main thread.
+     */
+    public void refresh(@NonNull Callback<T> callback);
+
+    public interface Callback<T> {
+        public void onData(T value);
+    }
+}
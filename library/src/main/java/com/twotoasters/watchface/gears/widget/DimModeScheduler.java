@@ -0,0 +1,217 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+
+/**
+ * Schedules the {@link AlarmManager#RTC_WAKEUP} alarms that keep the CPU awake
+ * in dim mode, according to a {@link WakePolicy}.
+ *
+ * Each alarm is a one-shot that is re-armed when it is delivered, so the policy
+ * and battery level are re-evaluated on every wakeup. The scheduler is owned by
+ * the {@link TickHub} and started while at least one attached watchface returns
+ * true from {@link IWatchface#handleSecondsInDimMode()}.
+ */
+public class DimModeScheduler {
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+
+    private final Context mContext;
+    private final WatchClock mClock;
+
+    private AlarmManager mAlarmManager;
+    private PendingIntent mPendingIntent;
+
+    private WakePolicy mPolicy = WakePolicy.EXACT_SECOND;
+    private WakePolicy mGovernedPolicy;
+    private long mWindowInterval = 5 * MILLIS_PER_SECOND;
+    private long mWindowSlack = 2 * MILLIS_PER_SECOND;
+    private int mWindowedBelowLevel = 50;
+    private int mMinuteBelowLevel = 20;
+
+    private int mBatteryLevel = -1;
+    private boolean mRunning;
+
+    private int mScheduledCount;
+    private int mWakeupCount;
+
+    DimModeScheduler(Context context, WatchClock clock) {
+        mContext = context;
+        mClock = clock;
+    }
+
+    public void setPolicy(@NonNull WakePolicy policy) {
+        mPolicy = policy;
+        reschedule();
+    }
+
+    @NonNull
+    public WakePolicy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Returns the policy currently in use. Differs from {@link #getPolicy()} for
+     * {@link WakePolicy#BATTERY_AWARE}, and while a {@link TickGovernor} rule sets
+     * the policy.
+     */
+    @NonNull
+    public WakePolicy getEffectivePolicy() {
+        WakePolicy policy = mGovernedPolicy != null ? mGovernedPolicy : mPolicy;
+        if (policy != WakePolicy.BATTERY_AWARE || mBatteryLevel < 0) {
+            return policy == WakePolicy.BATTERY_AWARE ? WakePolicy.EXACT_SECOND : policy;
+        } else if (mBatteryLevel < mMinuteBelowLevel) {
+            return WakePolicy.MINUTE;
+        } else if (mBatteryLevel < mWindowedBelowLevel) {
+            return WakePolicy.WINDOWED;
+        } else {
+            return WakePolicy.EXACT_SECOND;
+        }
+    }
+
+    /**
+     * Configures {@link WakePolicy#WINDOWED}.
+     *
+     * @param intervalMillis the nominal time between wakeups
+     * @param slackMillis    how much later than nominal the system may deliver
+     *                       a wakeup to batch it with other alarms
+     */
+    public void setWindow(long intervalMillis, long slackMillis) {
+        if (intervalMillis <= 0 || slackMillis < 0) {
+            throw new IllegalArgumentException("Interval must be positive and slack not negative");
+        }
+        mWindowInterval = intervalMillis;
+        mWindowSlack = slackMillis;
+        reschedule();
+    }
+
+    /**
+     * Configures {@link WakePolicy#BATTERY_AWARE}.
+     *
+     * @param windowedBelowLevel battery percentage below which wakeups are windowed
+     * @param minuteBelowLevel   battery percentage below which wakeups happen only
+     *                           on minute boundaries
+     */
+    public void setBatteryThresholds(int windowedBelowLevel, int minuteBelowLevel) {
+        mWindowedBelowLevel = windowedBelowLevel;
+        mMinuteBelowLevel = minuteBelowLevel;
+        reschedule();
+    }
+
+    /**
+     * @return the number of alarms set since the last {@link #resetCounters()}
+     */
+    public int getScheduledCount() {
+        return mScheduledCount;
+    }
+
+    /**
+     * @return the number of alarms actually delivered, i.e. CPU wakeups taken,
+     *         since the last {@link #resetCounters()}
+     */
+    public int getWakeupCount() {
+        return mWakeupCount;
+    }
+
+    public void resetCounters() {
+        mScheduledCount = 0;
+        mWakeupCount = 0;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    void start() {
+        if (!mRunning) {
+            mRunning = true;
+            schedule();
+        }
+    }
+
+    void stop() {
+        if (mRunning) {
+            mRunning = false;
+            getAlarmManager().cancel(getPendingIntent());
+        }
+    }
+
+    /**
+     * Called when the alarm was delivered; arms the next one.
+     */
+    void onWakeup() {
+        mWakeupCount++;
+        if (mRunning) {
+            schedule();
+        }
+    }
+
+    /**
+     * Overrides the policy set through {@link #setPolicy(WakePolicy)}, or restores
+     * it when null.
+     */
+    void setGovernedPolicy(WakePolicy policy) {
+        if (mGovernedPolicy != policy) {
+            WakePolicy previous = getEffectivePolicy();
+            mGovernedPolicy = policy;
+            if (previous != getEffectivePolicy()) {
+                reschedule();
+            }
+        }
+    }
+
+    void onBatteryLevelChanged(int percentage) {
+        WakePolicy previous = getEffectivePolicy();
+        mBatteryLevel = percentage;
+        if (previous != getEffectivePolicy()) {
+            reschedule();
+        }
+    }
+
+    private void reschedule() {
+        if (mRunning) {
+            getAlarmManager().cancel(getPendingIntent());
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        long now = mClock.currentTimeMillis();
+        AlarmManager alarmManager = getAlarmManager();
+
+        switch (getEffectivePolicy()) {
+            case WINDOWED:
+                alarmManager.setWindow(AlarmManager.RTC_WAKEUP, now + mWindowInterval,
+                        mWindowSlack, getPendingIntent());
+                break;
+            case MINUTE:
+                alarmManager.setExact(AlarmManager.RTC_WAKEUP,
+                        now - now % MILLIS_PER_MINUTE + MILLIS_PER_MINUTE, getPendingIntent());
+                break;
+            default:
+                alarmManager.setExact(AlarmManager.RTC_WAKEUP,
+                        now - now % MILLIS_PER_SECOND + MILLIS_PER_SECOND, getPendingIntent());
+                break;
+        }
+        mScheduledCount++;
+    }
+
+    private AlarmManager getAlarmManager() {
+        if (mAlarmManager == null) {
+            mAlarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        }
+        return mAlarmManager;
+    }
+
+    private PendingIntent getPendingIntent() {
+        if (mPendingIntent == null) {
+            mPendingIntent = PendingIntent.getBroadcast(mContext, 0,
+                    new Intent(TickHub.ACTION_KEEP_WATCHFACE_AWAKE), 0);
+        }
+        return mPendingIntent;
+    }
+}
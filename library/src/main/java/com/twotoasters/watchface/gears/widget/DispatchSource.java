@@ -0,0 +1,35 @@
+package com.twotoasters.watchface.gears.widget;
+
+/**
+ * What caused a {@link Watch} to deliver an update, as counted by
+ * {@link WatchMetrics}.
+ */
+public enum DispatchSource {
+
+    /** The second ticker of the {@link TickHub}. */
+    TICKER,
+
+    /** {@link android.content.Intent#ACTION_TIME_TICK}. */
+    TIME_TICK,
+
+    /** {@link android.content.Intent#ACTION_TIME_CHANGED}. */
+    TIME_SET,
+
+    /** {@link android.content.Intent#ACTION_TIMEZONE_CHANGED}. */
+    TIME_ZONE,
+
+    /** A dim mode wakeup alarm from the {@link DimModeScheduler}. */
+    ALARM,
+
+    /** The time format settings observer. */
+    SETTINGS,
+
+    /** {@link android.content.Intent#ACTION_BATTERY_CHANGED}. */
+    BATTERY,
+
+    /** A display frame in {@link TickRate#CONTINUOUS} mode. */
+    FRAME,
+
+    /** A call to a {@link Watch} method, such as a format or time zone setter. */
+    API
+}
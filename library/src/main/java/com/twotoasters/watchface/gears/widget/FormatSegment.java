@@ -0,0 +1,118 @@
+package com.twotoasters.watchface.gears.widget;
+
+import java.util.ArrayList;
+
+/**
+ * One piece of a Joda-Time pattern: either literal text or a run of a single
+ * pattern letter, such as {@code "mm"}.
+ *
+ * Splitting a pattern into segments lets the {@link TimeTextCache} re-render
+ * only the parts whose fields changed.
+ */
+final class FormatSegment {
+
+    final String pattern;
+    final String literal;
+    final char letter;
+    final int count;
+
+    private FormatSegment(String pattern, String literal, char letter, int count) {
+        this.pattern = pattern;
+        this.literal = literal;
+        this.letter = letter;
+        this.count = count;
+    }
+
+    boolean isLiteral() {
+        return literal != null;
+    }
+
+    /**
+     * Returns the {@link WatchChange} flags on which this segment must be
+     * rendered again.
+     */
+    int getChanges() {
+        if (isLiteral()) {
+            return 0;
+        }
+        switch (letter) {
+            case 'S':
+                return WatchChange.MILLIS;
+            case 's':
+                return WatchChange.SECOND;
+            case 'm':
+                return WatchChange.MINUTE;
+            case 'H': case 'k': case 'K': case 'h': case 'a':
+                return WatchChange.HOUR;
+            case 'z': case 'Z':
+                return WatchChange.TIMEZONE | WatchChange.DAY;
+            case 'G': case 'C': case 'Y': case 'x': case 'w': case 'e': case 'E':
+            case 'y': case 'D': case 'M': case 'd':
+                return WatchChange.DAY;
+            default:
+                // Unknown letter, render on every update
+                return WatchChange.MILLIS;
+        }
+    }
+
+    /**
+     * Splits a pattern as understood by
+     * {@link org.joda.time.format.DateTimeFormat#forPattern(String)} into segments.
+     */
+    static FormatSegment[] parse(String pattern) {
+        ArrayList<FormatSegment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                // Quoted text, '' is an escaped quote both inside and outside quotes
+                int end = i + 1;
+                if (end < length && pattern.charAt(end) == '\'') {
+                    literal.append('\'');
+                    i = end + 1;
+                    continue;
+                }
+                while (end < length) {
+                    char q = pattern.charAt(end);
+                    if (q == '\'') {
+                        if (end + 1 < length && pattern.charAt(end + 1) == '\'') {
+                            literal.append('\'');
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    literal.append(q);
+                    end++;
+                }
+                i = end + 1;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                int end = i + 1;
+                while (end < length && pattern.charAt(end) == c) {
+                    end++;
+                }
+                if (literal.length() > 0) {
+                    segments.add(literal(literal.toString()));
+                    literal.setLength(0);
+                }
+                segments.add(new FormatSegment(pattern.substring(i, end), null, c, end - i));
+                i = end;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            segments.add(literal(literal.toString()));
+        }
+
+        return segments.toArray(new FormatSegment[segments.size()]);
+    }
+
+    private static FormatSegment literal(String text) {
+        return new FormatSegment(null, text, (char) 0, 0);
+    }
+}
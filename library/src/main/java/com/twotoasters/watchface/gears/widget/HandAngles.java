@@ -0,0 +1,131 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Angles and directions of the hands of an analog watch.
+ *
+ * Angles are in degrees clockwise from 12 o'clock, ready for
+ * {@link android.graphics.Canvas#rotate(float)}. Directions are unit vectors in
+ * screen coordinates, y pointing down, so the tip of a hand of length
+ * {@code r} is at {@code (cx + r * getX(hand), cy + r * getY(hand))}.
+ *
+ * Stepped angles move in whole units: the second hand once per second, the
+ * minute hand once per minute and the hour hand once per minute, by half a
+ * degree. Smooth angles move with the milliseconds, for sweeping hands.
+ *
+ * {@link #update(WatchTime)} only recomputes what changed since the previous
+ * update, and uses {@link TrigTable} for the directions, so updating on every
+ * frame neither allocates nor calls {@link Math#sin(double)}.
+ *
+ * @see Watch#getHandAngles()
+ */
+public final class HandAngles {
+
+    public static final int HOUR = 0;
+    public static final int MINUTE = 1;
+    public static final int SECOND = 2;
+
+    private static final int MILLIS_PER_SECOND = 1000;
+    private static final int MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final int MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final int MILLIS_PER_HALF_DAY = 12 * MILLIS_PER_HOUR;
+
+    private final float[] mAngle = new float[3];
+    private final float[] mX = new float[3];
+    private final float[] mY = new float[3];
+
+    private final float[] mSmoothAngle = new float[3];
+    private final float[] mSmoothX = new float[3];
+    private final float[] mSmoothY = new float[3];
+
+    private int mSecondOfMinute = -1;
+    private int mMinuteOfHalfDay = -1;
+    private int mMillisOfHalfDay = -1;
+
+    /**
+     * Brings the angles up to date with the given time.
+     */
+    public void update(@NonNull WatchTime time) {
+        int hour = time.getHourOfDay() % 12;
+        int minute = time.getMinuteOfHour();
+        int second = time.getSecondOfMinute();
+
+        int minuteOfHalfDay = hour * 60 + minute;
+        if (minuteOfHalfDay != mMinuteOfHalfDay) {
+            mMinuteOfHalfDay = minuteOfHalfDay;
+            setStepped(HOUR, minuteOfHalfDay * 0.5f);
+            setStepped(MINUTE, minute * 6f);
+        }
+        if (second != mSecondOfMinute) {
+            mSecondOfMinute = second;
+            setStepped(SECOND, second * 6f);
+        }
+
+        int millisOfMinute = second * MILLIS_PER_SECOND + time.getMillisOfSecond();
+        int millisOfHalfDay = minuteOfHalfDay * MILLIS_PER_MINUTE + millisOfMinute;
+        if (millisOfHalfDay != mMillisOfHalfDay) {
+            mMillisOfHalfDay = millisOfHalfDay;
+            setSmooth(HOUR, millisOfHalfDay * (360f / MILLIS_PER_HALF_DAY));
+            setSmooth(MINUTE, (minute * MILLIS_PER_MINUTE + millisOfMinute) * (360f / MILLIS_PER_HOUR));
+            setSmooth(SECOND, millisOfMinute * (360f / MILLIS_PER_MINUTE));
+        }
+    }
+
+    /**
+     * @param hand {@link #HOUR}, {@link #MINUTE} or {@link #SECOND}
+     * @return the stepped angle of the hand in degrees, 0 to 360
+     */
+    public float getAngle(int hand) {
+        return mAngle[hand];
+    }
+
+    /**
+     * @return the x component of the stepped direction of the hand
+     */
+    public float getX(int hand) {
+        return mX[hand];
+    }
+
+    /**
+     * @return the y component of the stepped direction of the hand
+     */
+    public float getY(int hand) {
+        return mY[hand];
+    }
+
+    /**
+     * @return the smooth angle of the hand in degrees, 0 to 360
+     */
+    public float getSmoothAngle(int hand) {
+        return mSmoothAngle[hand];
+    }
+
+    /**
+     * @return the x component of the smooth direction of the hand
+     */
+    public float getSmoothX(int hand) {
+        return mSmoothX[hand];
+    }
+
+    /**
+     * @return the y component of the smooth direction of the hand
+     */
+    public float getSmoothY(int hand) {
+        return mSmoothY[hand];
+    }
+
+    private void setStepped(int hand, float degrees) {
+        int index = TrigTable.indexOf(degrees);
+        mAngle[hand] = degrees;
+        mX[hand] = TrigTable.sinOf(index);
+        mY[hand] = -TrigTable.cosOf(index);
+    }
+
+    private void setSmooth(int hand, float degrees) {
+        int index = TrigTable.indexOf(degrees);
+        mSmoothAngle[hand] = degrees;
+        mSmoothX[hand] = TrigTable.sinOf(index);
+        mSmoothY[hand] = -TrigTable.cosOf(index);
+    }
+}
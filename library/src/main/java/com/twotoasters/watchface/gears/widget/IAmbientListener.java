@@ -0,0 +1,18 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Optional interface for an {@link IWatchface} that draws an ambient style.
+ *
+ * When ambient mode is enabled on its {@link Watch}, the watch calls
+ * {@link #onAmbientModeChanged(AmbientMode)} whenever the face enters or leaves
+ * ambient mode, before the update that goes with it.
+ *
+ * @see Watch#setAmbientModeEnabled(boolean)
+ */
+public interface IAmbientListener {
+
+    // The mode is owned by the Watch; its burn-in offset moves on minute ticks
+    public void onAmbientModeChanged(@NonNull AmbientMode mode);
+}
@@ -0,0 +1,21 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Receives the values delivered by the providers of a {@link DataPipeline}.
+ *
+ * @see DataPipeline#addListener(IDataListener)
+ */
+public interface IDataListener {
+
+    /**
+     * Called once for all values that changed or expired together.
+     *
+     * @param changedKeys the keys of those values; the list can not be modified
+     *                    and is reused, so it is only valid during this call
+     */
+    public void onDataChanged(@NonNull List<String> changedKeys);
+}
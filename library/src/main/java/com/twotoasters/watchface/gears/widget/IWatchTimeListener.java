@@ -0,0 +1,17 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Optional interface for an {@link IWatchface} that wants to receive time
+ * updates without allocation.
+ *
+ * When the watchface implements this interface, {@link Watch} delivers every
+ * tick through {@link #onTimeChanged(WatchTime)} and no longer calls
+ * {@link IWatchface#onTimeChanged(org.joda.time.DateTime)}.
+ */
+public interface IWatchTimeListener {
+
+    // The snapshot is owned by the Watch and is updated in place on the next tick
+    public void onTimeChanged(@NonNull WatchTime time);
+}
@@ -10,6 +10,14 @@ import org.joda.time.DateTime;
 public interface IWatchface {
 
     // Implemented by the Watchface
+
+    /**
+     * Called when the watchface is shown active or dimmed. Must also be delegated
+     * to {@link Watch#onActiveStateChanged(boolean)}: only then does the watch stop
+     * {@link TickRate#CONTINUOUS} updates and slow down in dim mode.
+     * {@link com.twotoasters.watchface.gears.activity.GearsWatchfaceActivity}
+     * does this for watches kept in its {@link WatchSession}.
+     */
     public void onActiveStateChanged(boolean active);
     public void onTimeChanged(@NonNull DateTime time);
     public void onBatteryLevelChanged(int percentage);
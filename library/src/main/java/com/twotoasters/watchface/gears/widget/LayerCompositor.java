@@ -0,0 +1,438 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+
+import com.twotoasters.watchface.gears.util.DeviceProfile;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Draws a watchface as a stack of layers, caching the ones that rarely change.
+ *
+ * Static layers, such as the dial, tick marks and logo, are drawn once into a
+ * bitmap and copied onto the canvas on every following frame. Consecutive static
+ * layers share a bitmap, so a face with hands between a dial and a center cap
+ * uses two. Dynamic layers, such as hands and battery indicators, are drawn on
+ * every frame in the order they were added.
+ *
+ * Cached layers are redrawn when the canvas size changes, after
+ * {@link #invalidate()}, when the ambient style changes, and on ticks that carry
+ * any of the {@link WatchChange} flags they were added with. While the watchface
+ * is not active, or when a cache would exceed the memory budget, static layers
+ * are drawn directly instead and their bitmaps are released.
+ *
+ * When given the {@link AmbientMode} of a {@link Watch} through
+ * {@link #setAmbientMode(AmbientMode)}, the compositor draws ambient frames
+ * itself: all layers are rendered into a single bitmap that is only redrawn when
+ * the time shown changes, and copied onto black in monochrome, thresholded to
+ * black and white on low-bit screens, moved by the burn-in offset.
+ *
+ * Drawing must happen on one thread, which may be a render thread such as the
+ * one of {@link SurfaceWatchface}. The other methods may be called from any
+ * thread; their effect is applied on the next {@link #draw(Canvas, WatchTime)}.
+ */
+public class LayerCompositor {
+
+    /**
+     * Memory budget used unless changed through {@link #setMemoryBudget(long)}.
+     * Enough for two full screen layers on the largest current watches.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 2 * 400 * 400 * 4;
+
+    private static final AtomicLong sTotalCachedBytes = new AtomicLong();
+
+    // Spreads gray levels around the middle far enough to clamp them to black or white
+    private static final float THRESHOLD_GAIN = 255f;
+
+    public interface Layer {
+
+        /**
+         * Draws the layer. Static layers are drawn onto a transparent bitmap of
+         * the size of the canvas the compositor draws to.
+         */
+        public void draw(@NonNull Canvas canvas, @NonNull WatchTime time);
+    }
+
+    private static class Entry {
+        final boolean cached;
+        final ArrayList<Layer> layers = new ArrayList<>(1);
+        int invalidateOn;
+
+        Bitmap bitmap;
+        Canvas bitmapCanvas;
+        boolean valid;
+
+        Entry(boolean cached) {
+            this.cached = cached;
+        }
+    }
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final DeviceProfile mProfile;
+
+    private volatile boolean mActive = true;
+    private volatile boolean mAmbient;
+    // Copies handed over by setAmbientMode(), never changed once published
+    private volatile AmbientMode mAmbientModeSnapshot;
+    private volatile boolean mInvalidated;
+    private volatile boolean mEvictRequested;
+    private volatile long mMemoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    private int mWidth;
+    private int mHeight;
+    private boolean mDrawnAmbient;
+    private AmbientMode mDrawnAmbientModeSnapshot;
+    private final AmbientMode mFrameAmbientMode = new AmbientMode();
+
+    private Bitmap mAmbientBitmap;
+    private Canvas mAmbientCanvas;
+    private boolean mAmbientValid;
+    private final Paint mMonochromePaint = createAmbientPaint(false);
+    private final Paint mLowBitPaint = createAmbientPaint(true);
+
+    private volatile long mCachedBytes;
+    private volatile long mRedrawCount;
+
+    /**
+     * Creates a compositor that only knows the screen type once the
+     * {@link DeviceProfile} was computed, e.g. by
+     * {@link com.twotoasters.watchface.gears.GearsWatchfaceApp}.
+     */
+    public LayerCompositor() {
+        mProfile = null;
+    }
+
+    public LayerCompositor(@NonNull Context context) {
+        mProfile = DeviceProfile.get(context);
+    }
+
+    /**
+     * Returns the memory held by the caches of all compositors in this process.
+     */
+    public static long getTotalCachedBytes() {
+        return sTotalCachedBytes.get();
+    }
+
+    /**
+     * Adds a static layer on top of the layers added so far. It is redrawn when
+     * the format changes.
+     */
+    public void addStaticLayer(@NonNull Layer layer) {
+        addStaticLayer(layer, 0);
+    }
+
+    /**
+     * Adds a static layer on top of the layers added so far.
+     *
+     * @param invalidateOn {@link WatchChange} flags, besides
+     *                     {@link WatchChange#FORMAT}, that require the layer to be
+     *                     redrawn, e.g. {@link WatchChange#DAY} for a date window
+     */
+    public synchronized void addStaticLayer(@NonNull Layer layer, int invalidateOn) {
+        Entry entry = mEntries.isEmpty() ? null : mEntries.get(mEntries.size() - 1);
+        if (entry == null || !entry.cached) {
+            entry = new Entry(true);
+            mEntries.add(entry);
+        }
+        entry.layers.add(layer);
+        entry.invalidateOn |= invalidateOn | WatchChange.FORMAT;
+        mInvalidated = true;
+    }
+
+    /**
+     * Adds a layer that is drawn on every frame, on top of the layers added so far.
+     */
+    public synchronized void addDynamicLayer(@NonNull Layer layer) {
+        Entry entry = new Entry(false);
+        entry.layers.add(layer);
+        mEntries.add(entry);
+    }
+
+    /**
+     * Redraws all static layers on the next frame. Call this when anything they
+     * draw changed, e.g. from {@link android.view.View#onConfigurationChanged}.
+     */
+    public void invalidate() {
+        mInvalidated = true;
+    }
+
+    /**
+     * Releases all cached bitmaps on the next frame, e.g. from
+     * {@link android.content.ComponentCallbacks2#onTrimMemory(int)}. They are
+     * recreated when needed.
+     */
+    public void evict() {
+        mEvictRequested = true;
+    }
+
+    /**
+     * Watchfaces should call this from {@link IWatchface#onActiveStateChanged(boolean)}.
+     * Caches are released while inactive, and unless an {@link AmbientMode} was
+     * set, the ambient style is used on AMOLED screens.
+     *
+     * @see DeviceProfile#amoled
+     */
+    public void onActiveStateChanged(boolean active) {
+        mActive = active;
+        if (mAmbientModeSnapshot == null) {
+            DeviceProfile profile = mProfile != null ? mProfile : DeviceProfile.peek();
+            setAmbient(!active && profile != null && profile.amoled);
+        }
+    }
+
+    /**
+     * Watchfaces that enabled {@link Watch#setAmbientModeEnabled(boolean)} should
+     * call this from {@link IAmbientListener#onAmbientModeChanged(AmbientMode)}.
+     * The ambient style then follows the mode, and ambient frames are rendered by
+     * the compositor. The mode is copied; the burn-in offset is recomputed for
+     * the time of each frame, so it only has to be passed again when it switches.
+     */
+    public void setAmbientMode(@NonNull AmbientMode mode) {
+        AmbientMode snapshot = new AmbientMode();
+        snapshot.set(mode);
+        mAmbientModeSnapshot = snapshot;
+        setAmbient(mode.isAmbient());
+    }
+
+    /**
+     * Selects the ambient style, which layers can check through
+     * {@link #isAmbient()}. Changing it redraws all static layers.
+     */
+    public void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+    }
+
+    public boolean isAmbient() {
+        return mAmbient;
+    }
+
+    /**
+     * Limits the memory used by the cached bitmaps of this compositor. Static
+     * layers that do not fit are drawn directly.
+     */
+    public void setMemoryBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Budget must not be negative");
+        }
+        mMemoryBudget = bytes;
+        mEvictRequested = true;
+    }
+
+    public long getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
+    /**
+     * @return the memory currently held by cached bitmaps of this compositor
+     */
+    public long getCachedBytes() {
+        return mCachedBytes;
+    }
+
+    /**
+     * @return the number of times a cached bitmap was drawn, including the
+     *         first time
+     */
+    public long getRedrawCount() {
+        return mRedrawCount;
+    }
+
+    /**
+     * Draws all layers onto the canvas.
+     */
+    public synchronized void draw(@NonNull Canvas canvas, @NonNull WatchTime time) {
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        boolean ambient = mAmbient;
+        if (mInvalidated || width != mWidth || height != mHeight || ambient != mDrawnAmbient) {
+            mInvalidated = false;
+            mWidth = width;
+            mHeight = height;
+            mDrawnAmbient = ambient;
+            for (Entry entry : mEntries) {
+                entry.valid = false;
+            }
+            mAmbientValid = false;
+        }
+
+        boolean active = mActive;
+        AmbientMode snapshot = mAmbientModeSnapshot;
+        if (snapshot != null && snapshot != mDrawnAmbientModeSnapshot) {
+            mDrawnAmbientModeSnapshot = snapshot;
+            mFrameAmbientMode.set(snapshot);
+        }
+        boolean ambientRender = mFrameAmbientMode.isAmbient();
+        boolean evict = mEvictRequested;
+        mEvictRequested = false;
+        if (evict || !active || ambientRender) {
+            releaseBitmaps();
+        }
+        if ((evict || !ambientRender) && mAmbientBitmap != null) {
+            releaseAmbientBitmap();
+        }
+
+        if (ambientRender) {
+            drawAmbient(canvas, time);
+            return;
+        }
+
+        int changes = time.getChanges();
+        for (Entry entry : mEntries) {
+            if (!entry.cached) {
+                entry.layers.get(0).draw(canvas, time);
+            } else if (active && prepareBitmap(entry)) {
+                if (!entry.valid || (changes & entry.invalidateOn) != 0) {
+                    entry.bitmap.eraseColor(Color.TRANSPARENT);
+                    drawLayers(entry, entry.bitmapCanvas, time);
+                    entry.valid = true;
+                    mRedrawCount++;
+                }
+                canvas.drawBitmap(entry.bitmap, 0, 0, null);
+            } else {
+                drawLayers(entry, canvas, time);
+            }
+        }
+    }
+
+    private void drawAmbient(Canvas canvas, WatchTime time) {
+        AmbientMode mode = mFrameAmbientMode;
+        mode.updateOffset(time.getMillis());
+        int offsetX = mode.getOffsetX();
+        int offsetY = mode.getOffsetY();
+        canvas.drawColor(Color.BLACK);
+
+        if (!prepareAmbientBitmap()) {
+            canvas.save();
+            canvas.translate(offsetX, offsetY);
+            for (Entry entry : mEntries) {
+                drawLayers(entry, canvas, time);
+            }
+            canvas.restore();
+            return;
+        }
+
+        // Ambient updates are rare, so any change of the time shown redraws all layers
+        if (!mAmbientValid || (time.getChanges() & ~WatchChange.MILLIS) != 0) {
+            mAmbientBitmap.eraseColor(Color.TRANSPARENT);
+            for (Entry entry : mEntries) {
+                drawLayers(entry, mAmbientCanvas, time);
+            }
+            mAmbientValid = true;
+            mRedrawCount++;
+        }
+        canvas.drawBitmap(mAmbientBitmap, offsetX, offsetY,
+                mode.isLowBit() ? mLowBitPaint : mMonochromePaint);
+    }
+
+    private static void drawLayers(Entry entry, Canvas canvas, WatchTime time) {
+        for (int i = 0, n = entry.layers.size(); i < n; i++) {
+            entry.layers.get(i).draw(canvas, time);
+        }
+    }
+
+    /**
+     * @return true if the entry has a bitmap of the current size
+     */
+    private boolean prepareBitmap(Entry entry) {
+        Bitmap bitmap = entry.bitmap;
+        if (bitmap != null && bitmap.getWidth() == mWidth && bitmap.getHeight() == mHeight) {
+            return true;
+        }
+        if (bitmap != null) {
+            releaseBitmap(entry);
+        }
+
+        long bytes = (long) mWidth * mHeight * 4;
+        if (mWidth == 0 || mHeight == 0 || mCachedBytes + bytes > mMemoryBudget) {
+            return false;
+        }
+
+        entry.bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        entry.bitmapCanvas = new Canvas(entry.bitmap);
+        entry.valid = false;
+        account(entry.bitmap.getByteCount());
+        return true;
+    }
+
+    /**
+     * @return true if the ambient bitmap exists and has the current size
+     */
+    private boolean prepareAmbientBitmap() {
+        Bitmap bitmap = mAmbientBitmap;
+        if (bitmap != null && bitmap.getWidth() == mWidth && bitmap.getHeight() == mHeight) {
+            return true;
+        }
+        if (bitmap != null) {
+            releaseAmbientBitmap();
+        }
+
+        long bytes = (long) mWidth * mHeight * 4;
+        if (mWidth == 0 || mHeight == 0 || mCachedBytes + bytes > mMemoryBudget) {
+            return false;
+        }
+
+        mAmbientBitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        mAmbientCanvas = new Canvas(mAmbientBitmap);
+        mAmbientValid = false;
+        account(mAmbientBitmap.getByteCount());
+        return true;
+    }
+
+    private void releaseAmbientBitmap() {
+        account(-mAmbientBitmap.getByteCount());
+        mAmbientBitmap.recycle();
+        mAmbientBitmap = null;
+        mAmbientCanvas = null;
+        mAmbientValid = false;
+    }
+
+    private void releaseBitmaps() {
+        for (Entry entry : mEntries) {
+            if (entry.bitmap != null) {
+                releaseBitmap(entry);
+            }
+        }
+    }
+
+    private void releaseBitmap(Entry entry) {
+        account(-entry.bitmap.getByteCount());
+        entry.bitmap.recycle();
+        entry.bitmap = null;
+        entry.bitmapCanvas = null;
+        entry.valid = false;
+    }
+
+    private void account(long bytes) {
+        mCachedBytes += bytes;
+        sTotalCachedBytes.addAndGet(bytes);
+    }
+
+    private static Paint createAmbientPaint(boolean lowBit) {
+        ColorMatrix matrix = new ColorMatrix();
+        matrix.setSaturation(0);
+        if (lowBit) {
+            // Gray levels and edge alpha both end up fully on or off
+            float offset = 128 - 128 * THRESHOLD_GAIN;
+            matrix.postConcat(new ColorMatrix(new float[] {
+                    THRESHOLD_GAIN, 0, 0, 0, offset,
+                    0, THRESHOLD_GAIN, 0, 0, offset,
+                    0, 0, THRESHOLD_GAIN, 0, offset,
+                    0, 0, 0, THRESHOLD_GAIN, offset
+            }));
+        }
+
+        Paint paint = new Paint();
+        paint.setAntiAlias(!lowBit);
+        paint.setFilterBitmap(!lowBit);
+        paint.setColorFilter(new ColorMatrixColorFilter(matrix));
+        return paint;
+    }
+}
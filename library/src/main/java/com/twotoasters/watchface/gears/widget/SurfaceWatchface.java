@@ -0,0 +1,276 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import org.joda.time.DateTime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for watchfaces that draw on their own thread.
+ *
+ * The face owns a {@link Watch} that keeps ticking on the main thread as usual.
+ * Every tick is copied into one of three {@link WatchTime} buffers and handed to
+ * a render thread without locking: the main thread writes one buffer, the render
+ * thread draws another, and the third holds the latest time that has not been
+ * drawn yet. When drawing falls behind, newer ticks replace the waiting one, so
+ * the render thread always draws the most recent time and stale frames are
+ * skipped rather than queued. The {@link WatchChange} flags of a skipped tick
+ * are carried over to the next one. Frames are drawn into the double-buffered
+ * surface of the {@link SurfaceView} with {@link #onDrawFrame(Canvas, WatchTime)}.
+ * The times of the world clock zones set through {@link Watch#setZones(String...)}
+ * are handed over with each tick and read with {@link #getFrameZoneTime(int)}.
+ *
+ * Callbacks other than {@link #onDrawFrame(Canvas, WatchTime)}, such as
+ * {@link #onBatteryLevelChanged(int)}, still arrive on the main thread.
+ * Subclasses that draw state from them must hand it over safely, for example
+ * through volatile fields, and call {@link #requestRender()}.
+ */
+public abstract class SurfaceWatchface extends SurfaceView
+        implements IWatchface, IWatchTimeListener, SurfaceHolder.Callback {
+
+    private static final int MSG_RENDER = 1;
+    private static final int MSG_REDRAW = 2;
+
+    // The shared slot holds a buffer index, and FRESH while that buffer has not been drawn
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final Watch mWatch;
+
+    private static final class Frame {
+        final WatchTime time = new WatchTime();
+        WatchTime[] zoneTimes = new WatchTime[0];
+    }
+
+    private final Frame[] mBuffers = { new Frame(), new Frame(), new Frame() };
+    private final AtomicInteger mShared = new AtomicInteger(2);
+    private int mWriteIndex = 0; // main thread only
+    private int mReadIndex = 1; // render thread only
+    private int mSkippedChanges; // main thread only
+    private int[] mSkippedZoneChanges = new int[0]; // main thread only
+    private boolean mHasFrame; // render thread only
+
+    private final Object mSurfaceLock = new Object();
+    private boolean mSurfaceReady; // guarded by mSurfaceLock
+
+    private HandlerThread mRenderThread;
+    private Handler mRenderHandler;
+
+    private final AtomicLong mRenderedCount = new AtomicLong();
+    private final AtomicLong mSkippedCount = new AtomicLong();
+
+    private final Handler.Callback mRenderCallback = new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            render(msg.what == MSG_REDRAW);
+            return true;
+        }
+    };
+
+    public SurfaceWatchface(Context context) {
+        this(context, null);
+    }
+
+    public SurfaceWatchface(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SurfaceWatchface(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        getHolder().addCallback(this);
+        // Faces without a view ID can not be told apart across recreation
+        mWatch = getId() != NO_ID
+                ? Watch.obtain(this, getClass().getName() + '#' + getId()) : new Watch(this);
+    }
+
+    /**
+     * Draws a frame. Called on the render thread with the surface locked.
+     *
+     * @param time the time to show; only valid until this method returns
+     */
+    protected abstract void onDrawFrame(@NonNull Canvas canvas, @NonNull WatchTime time);
+
+    @NonNull
+    public Watch getWatch() {
+        return mWatch;
+    }
+
+    /**
+     * Draws the last delivered time again, e.g. after state drawn by the face
+     * changed. Does nothing before the first tick.
+     */
+    public void requestRender() {
+        postRender(MSG_REDRAW);
+    }
+
+    /**
+     * @return the number of frames drawn
+     */
+    public long getRenderedFrameCount() {
+        return mRenderedCount.get();
+    }
+
+    /**
+     * @return the number of ticks that were replaced by a newer one before the
+     *         render thread got to draw them
+     */
+    public long getSkippedFrameCount() {
+        return mSkippedCount.get();
+    }
+
+    @Override
+    public void onActiveStateChanged(boolean active) {
+        mWatch.onActiveStateChanged(active);
+    }
+
+    @Override
+    public void onTimeChanged(@NonNull DateTime time) {
+        // Not called; ticks arrive through onTimeChanged(WatchTime)
+    }
+
+    @Override
+    public final void onTimeChanged(@NonNull WatchTime time) {
+        Frame buffer = mBuffers[mWriteIndex];
+        buffer.time.set(time);
+        buffer.time.addChanges(mSkippedChanges);
+        copyZoneTimes(buffer);
+
+        int previous = mShared.getAndSet(mWriteIndex | FRESH);
+        mWriteIndex = previous & INDEX_MASK;
+        Frame skipped = mBuffers[mWriteIndex];
+        boolean fresh = (previous & FRESH) != 0;
+        if (fresh) {
+            // Taken back before it was drawn
+            mSkippedCount.incrementAndGet();
+        }
+        mSkippedChanges = fresh ? skipped.time.getChanges() : 0;
+        for (int i = 0; i < mSkippedZoneChanges.length; i++) {
+            mSkippedZoneChanges[i] = fresh && i < skipped.zoneTimes.length
+                    ? skipped.zoneTimes[i].getChanges() : 0;
+        }
+        postRender(MSG_RENDER);
+    }
+
+    private void copyZoneTimes(Frame buffer) {
+        int count = mWatch.getZoneCount();
+        if (buffer.zoneTimes.length != count) {
+            // Only when the zones change
+            buffer.zoneTimes = new WatchTime[count];
+            for (int i = 0; i < count; i++) {
+                buffer.zoneTimes[i] = new WatchTime();
+            }
+        }
+        if (mSkippedZoneChanges.length != count) {
+            mSkippedZoneChanges = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.zoneTimes[i].set(mWatch.getZoneTime(i));
+            buffer.zoneTimes[i].addChanges(mSkippedZoneChanges[i]);
+        }
+    }
+
+    /**
+     * @return the number of world clock zones in the frame being drawn
+     */
+    protected int getFrameZoneCount() {
+        return mBuffers[mReadIndex].zoneTimes.length;
+    }
+
+    /**
+     * Returns the time in a world clock zone for the frame being drawn. Only valid
+     * on the render thread during {@link #onDrawFrame(Canvas, WatchTime)};
+     * {@link Watch#getZoneTime(int)} must not be used there.
+     */
+    @NonNull
+    protected WatchTime getFrameZoneTime(int index) {
+        return mBuffers[mReadIndex].zoneTimes[index];
+    }
+
+    @Override
+    public boolean handleSecondsInDimMode() {
+        return false;
+    }
+
+    @Override
+    public void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRenderThread = new HandlerThread(getClass().getSimpleName(), Process.THREAD_PRIORITY_DISPLAY);
+        mRenderThread.start();
+        mRenderHandler = new Handler(mRenderThread.getLooper(), mRenderCallback);
+        mWatch.onAttachedToWindow();
+    }
+
+    @Override
+    public void onDetachedFromWindow() {
+        mWatch.onDetachedFromWindow();
+        mRenderThread.quitSafely();
+        mRenderThread = null;
+        mRenderHandler = null;
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        synchronized (mSurfaceLock) {
+            mSurfaceReady = true;
+        }
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // Blocks until a frame in progress is posted; the surface is gone once this returns
+        synchronized (mSurfaceLock) {
+            mSurfaceReady = false;
+        }
+    }
+
+    private void postRender(int what) {
+        Handler handler = mRenderHandler;
+        if (handler != null && !handler.hasMessages(what)) {
+            handler.sendEmptyMessage(what);
+        }
+    }
+
+    private void render(boolean redraw) {
+        if ((mShared.get() & FRESH) != 0) {
+            // Only the main thread writes, and it always leaves FRESH set
+            mReadIndex = mShared.getAndSet(mReadIndex) & INDEX_MASK;
+            mHasFrame = true;
+        } else if (!redraw || !mHasFrame) {
+            return;
+        }
+
+        synchronized (mSurfaceLock) {
+            if (!mSurfaceReady) {
+                return;
+            }
+            SurfaceHolder holder = getHolder();
+            Canvas canvas = holder.lockCanvas();
+            if (canvas == null) {
+                return;
+            }
+            try {
+                onDrawFrame(canvas, mBuffers[mReadIndex].time);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+        mRenderedCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,261 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Limits how often the watches attached to a {@link TickHub} update, based on
+ * the state of the device.
+ *
+ * The governor holds a list of {@link Rule}s. Each rule has conditions on the
+ * active state of the watchface and the battery, and the limits that apply while
+ * they hold. When several rules match, the lowest tick and frame rates win, so
+ * those rules can be added in any order. The wake policy comes from the first
+ * matching rule that sets one:
+ * <pre>
+ * TickGovernor governor = TickHub.getInstance(context).getGovernor();
+ * governor.addRule(new TickGovernor.Rule().whenActive()
+ *         .maxTickRate(TickRate.CONTINUOUS).maxFrameRate(30));
+ * governor.addRule(new TickGovernor.Rule().whenBatteryBelow(50)
+ *         .maxTickRate(TickRate.SECOND).wakePolicy(WakePolicy.WINDOWED));
+ * governor.addRule(new TickGovernor.Rule().whenBatteryBelow(15)
+ *         .maxTickRate(TickRate.MINUTE).wakePolicy(WakePolicy.MINUTE));
+ * governor.addRule(new TickGovernor.Rule().whenDim()
+ *         .maxTickRate(TickRate.MINUTE));
+ * </pre>
+ *
+ * A watch never ticks faster than the rate it asks for, and never slower than
+ * the minimum it declares through {@link Watch#setMinTickRate(TickRate)}, even
+ * if a rule says otherwise. Limits are re-evaluated whenever the battery or a
+ * watch's active state changes and apply without detaching the watch.
+ *
+ * All methods must be called on the main thread.
+ */
+public class TickGovernor {
+
+    /**
+     * A set of conditions and the limits that apply while all of them hold. A
+     * rule without conditions always applies.
+     */
+    public static class Rule {
+
+        private Boolean mActive;
+        private int mBatteryBelow = -1;
+        private Boolean mCharging;
+
+        private TickRate mMaxTickRate;
+        private int mMaxFrameRate;
+        private WakePolicy mWakePolicy;
+
+        /** Applies only while the watchface is active. */
+        public Rule whenActive() {
+            mActive = Boolean.TRUE;
+            return this;
+        }
+
+        /** Applies only while the watchface is dimmed. */
+        public Rule whenDim() {
+            mActive = Boolean.FALSE;
+            return this;
+        }
+
+        /**
+         * Applies only while the battery level is below the given percentage.
+         * Never applies before the battery level is known.
+         */
+        public Rule whenBatteryBelow(int percentage) {
+            mBatteryBelow = percentage;
+            return this;
+        }
+
+        /** Applies only while the device is, or is not, charging. */
+        public Rule whenCharging(boolean charging) {
+            mCharging = charging;
+            return this;
+        }
+
+        /** The fastest rate watches may tick at while this rule applies. */
+        public Rule maxTickRate(@NonNull TickRate tickRate) {
+            mMaxTickRate = tickRate;
+            return this;
+        }
+
+        /** The frame rate cap for {@link TickRate#CONTINUOUS} while this rule applies. */
+        public Rule maxFrameRate(int maxFrameRate) {
+            if (maxFrameRate <= 0) {
+                throw new IllegalArgumentException("Frame rate must be positive");
+            }
+            mMaxFrameRate = maxFrameRate;
+            return this;
+        }
+
+        /**
+         * The policy the {@link DimModeScheduler} uses while this rule applies.
+         * Only rules that can match in dim mode are considered.
+         */
+        public Rule wakePolicy(@NonNull WakePolicy wakePolicy) {
+            mWakePolicy = wakePolicy;
+            return this;
+        }
+
+        boolean matches(boolean active, int batteryPercentage, boolean charging) {
+            if (mActive != null && mActive != active) {
+                return false;
+            }
+            if (mBatteryBelow >= 0 && (batteryPercentage < 0 || batteryPercentage >= mBatteryBelow)) {
+                return false;
+            }
+            return mCharging == null || mCharging == charging;
+        }
+    }
+
+    private final TickHub mTickHub;
+    private final ArrayList<Rule> mRules = new ArrayList<>();
+
+    private int mBatteryPercentage = -1;
+    private boolean mCharging;
+
+    private final TickRate[] mMaxTickRate = new TickRate[2];
+    private final int[] mMaxFrameRate = new int[2];
+    private WakePolicy mWakePolicy;
+
+    TickGovernor(TickHub tickHub) {
+        mTickHub = tickHub;
+    }
+
+    /**
+     * Adds a rule. It applies immediately to all attached watches.
+     */
+    public void addRule(@NonNull Rule rule) {
+        mRules.add(rule);
+        onRulesChanged();
+    }
+
+    public void removeRule(@NonNull Rule rule) {
+        if (mRules.remove(rule)) {
+            onRulesChanged();
+        }
+    }
+
+    /**
+     * Removes all rules, so watches tick at the rate they ask for.
+     */
+    public void clearRules() {
+        if (!mRules.isEmpty()) {
+            mRules.clear();
+            onRulesChanged();
+        }
+    }
+
+    /**
+     * Re-evaluates the rules. Call this after changing a rule that was already
+     * added.
+     */
+    public void onRulesChanged() {
+        evaluate();
+        mTickHub.onGovernorChanged();
+    }
+
+    /**
+     * @return the fastest rate allowed for a watchface in the given state, or null
+     *         if no rule limits it
+     */
+    public TickRate getMaxTickRate(boolean active) {
+        return mMaxTickRate[active ? 1 : 0];
+    }
+
+    /**
+     * @return the frame rate cap for a watchface in the given state, or 0 if no
+     *         rule limits it
+     */
+    public int getMaxFrameRate(boolean active) {
+        return mMaxFrameRate[active ? 1 : 0];
+    }
+
+    /**
+     * @return the dim mode wake policy required by the rules, or null to use the
+     *         policy set on the {@link DimModeScheduler}
+     */
+    public WakePolicy getWakePolicy() {
+        return mWakePolicy;
+    }
+
+    /**
+     * @return the battery level the rules were last evaluated with, or -1 if not
+     *         known yet
+     */
+    public int getBatteryPercentage() {
+        return mBatteryPercentage;
+    }
+
+    /**
+     * Records the battery state.
+     *
+     * @return true if any limit changed
+     */
+    boolean onBatteryChanged(int percentage, boolean charging) {
+        mBatteryPercentage = percentage;
+        mCharging = charging;
+        return evaluate();
+    }
+
+    /**
+     * Applies the governor's limits to a rate.
+     *
+     * @param tickRate    the rate the watch asks for
+     * @param minTickRate the rate the watch needs at least, or null
+     */
+    @NonNull
+    TickRate clamp(@NonNull TickRate tickRate, TickRate minTickRate, boolean active) {
+        TickRate limit = getMaxTickRate(active);
+        if (limit == null) {
+            return tickRate;
+        }
+        if (minTickRate != null && minTickRate.compareTo(limit) > 0) {
+            limit = minTickRate;
+        }
+        return tickRate.compareTo(limit) <= 0 ? tickRate : limit;
+    }
+
+    /**
+     * @return true if any limit changed
+     */
+    private boolean evaluate() {
+        boolean changed = false;
+        for (int i = 0; i < 2; i++) {
+            boolean active = i == 1;
+            TickRate maxTickRate = null;
+            int maxFrameRate = 0;
+            for (Rule rule : mRules) {
+                if (!rule.matches(active, mBatteryPercentage, mCharging)) {
+                    continue;
+                }
+                if (rule.mMaxTickRate != null
+                        && (maxTickRate == null || rule.mMaxTickRate.compareTo(maxTickRate) < 0)) {
+                    maxTickRate = rule.mMaxTickRate;
+                }
+                if (rule.mMaxFrameRate > 0
+                        && (maxFrameRate == 0 || rule.mMaxFrameRate < maxFrameRate)) {
+                    maxFrameRate = rule.mMaxFrameRate;
+                }
+            }
+            changed |= maxTickRate != mMaxTickRate[i] || maxFrameRate != mMaxFrameRate[i];
+            mMaxTickRate[i] = maxTickRate;
+            mMaxFrameRate[i] = maxFrameRate;
+        }
+
+        // Wakeups only happen in dim mode; the first matching rule decides
+        WakePolicy wakePolicy = null;
+        for (Rule rule : mRules) {
+            if (rule.mWakePolicy != null && rule.matches(false, mBatteryPercentage, mCharging)) {
+                wakePolicy = rule.mWakePolicy;
+                break;
+            }
+        }
+        changed |= wakePolicy != mWakePolicy;
+        mWakePolicy = wakePolicy;
+
+        return changed;
+    }
+}
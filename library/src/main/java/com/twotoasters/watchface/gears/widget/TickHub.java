@@ -0,0 +1,461 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.TimeZone;
+
+/**
+ * Process-wide source of time, battery and settings events for all attached
+ * {@link Watch} instances.
+ *
+ * Rather than every watch registering its own receivers, observer and ticker,
+ * the hub owns a single set of them and fans each event out to the watches
+ * that are currently attached. Registrations are made when the first watch
+ * attaches and released a few seconds after the last one detaches, so a
+ * watchface that is recreated, e.g. on a configuration change, finds them still
+ * in place.
+ *
+ * All methods must be called on the main thread.
+ */
+public class TickHub {
+
+    static final String ACTION_KEEP_WATCHFACE_AWAKE = "intent.action.keep.watchface.awake";
+
+    private static final long TICK_INTERVAL_MILLIS = 1000;
+    private static final long MAX_TICK_CORRECTION_MILLIS = 100;
+    private static final long SETTINGS_DEBOUNCE_MILLIS = 250;
+    private static final long UNREGISTER_DELAY_MILLIS = 10 * 1000;
+
+    private static TickHub sInstance;
+
+    /**
+     * Returns the hub for this process, creating it on first use.
+     */
+    @NonNull
+    public static synchronized TickHub getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            sInstance = new TickHub(context.getApplicationContext(), WatchClock.SYSTEM,
+                    new WatchScheduler.HandlerScheduler(handler));
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final WatchClock mClock;
+    private final WatchScheduler mScheduler;
+
+    private final ArrayList<Watch> mWatches = new ArrayList<>();
+    private Watch[] mDispatchList = new Watch[0];
+
+    private boolean mRegistered;
+    private boolean mTicking;
+
+    private String mSystemZoneId;
+    private int mBatteryLevel = -1;
+    private int mBatteryScale;
+    private int mBatteryPlugged;
+    private int mBatteryStatus;
+
+    private final DimModeScheduler mDimModeScheduler;
+    private final TickGovernor mGovernor;
+    private DataPipeline mDataPipeline;
+
+    private final ContentObserver mFormatChangeObserver;
+
+    private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+                onTimeZoneChanged(intent.getStringExtra("time-zone"));
+            } else if (Intent.ACTION_TIME_CHANGED.equals(action)) {
+                onTimeSet();
+            } else if (Intent.ACTION_TIME_TICK.equals(action)) {
+                onTimeTick();
+            } else if (ACTION_KEEP_WATCHFACE_AWAKE.equals(action)) {
+                // Only wakes the CPU so the ticker can run
+                mDimModeScheduler.onWakeup();
+                onKeepAwake();
+            }
+        }
+    };
+
+    private final BroadcastReceiver mBatInfoReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onBatteryChanged(intent.getIntExtra(BatteryManager.EXTRA_LEVEL, 0),
+                    intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100),
+                    intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0),
+                    intent.getIntExtra(BatteryManager.EXTRA_STATUS, BatteryManager.BATTERY_STATUS_UNKNOWN));
+        }
+    };
+
+    private long mTickTargetMillis;
+    private long mTickCorrectionMillis;
+    private long mLastTickLatenessMillis;
+
+    /**
+     * Fires on wall clock second boundaries. The handler schedules on uptime, so
+     * each run measures how late it was against the boundary it aimed for and
+     * posts the next run that much earlier. A run that arrives before its
+     * boundary waits out the remainder instead of showing the previous second,
+     * unless the wall clock was set back, in which case it realigns.
+     */
+    private final Runnable mTicker = new Runnable() {
+        public void run() {
+            long now = mClock.currentTimeMillis();
+
+            if (mTickTargetMillis != 0) {
+                long lateness = now - mTickTargetMillis;
+                if (lateness < -TICK_INTERVAL_MILLIS) {
+                    // The wall clock went back; don't wait for ACTION_TIME_CHANGED
+                    realignTicker();
+                    return;
+                } else if (lateness < 0) {
+                    mTickCorrectionMillis = Math.max(0, mTickCorrectionMillis + lateness);
+                    mScheduler.postDelayed(mTicker, -lateness);
+                    return;
+                }
+
+                mLastTickLatenessMillis = lateness;
+                if (lateness < TICK_INTERVAL_MILLIS) {
+                    // The lateness is what is left after the correction, so add it
+                    // up; a quarter at a time smooths out single slow dispatches,
+                    // and a missed second is not drift
+                    mTickCorrectionMillis += lateness / 4;
+                    mTickCorrectionMillis = Math.max(0,
+                            Math.min(mTickCorrectionMillis, MAX_TICK_CORRECTION_MILLIS));
+                }
+            }
+
+            onSecondTick();
+            scheduleNextTick();
+        }
+    };
+
+    private final Runnable mUnregister = new Runnable() {
+        @Override
+        public void run() {
+            if (mWatches.isEmpty() && mRegistered) {
+                unregister();
+            }
+        }
+    };
+
+    private final Runnable mFormatSettingsCheck = new Runnable() {
+        @Override
+        public void run() {
+            onFormatSettingsChanged();
+        }
+    };
+
+    /**
+     * Creates a hub with its own clock and scheduler, for example a
+     * {@link VirtualClock}. Most code should use {@link #getInstance(Context)}.
+     * Broadcasts and settings changes are still received on the main thread.
+     */
+    public TickHub(@NonNull Context context, @NonNull WatchClock clock, @NonNull WatchScheduler scheduler) {
+        mContext = context;
+        mHandler = new Handler(Looper.getMainLooper());
+        mClock = clock;
+        mScheduler = scheduler;
+        mDimModeScheduler = new DimModeScheduler(context, clock);
+        mGovernor = new TickGovernor(this);
+        mFormatChangeObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                scheduleFormatSettingsCheck();
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                onChange(selfChange);
+            }
+        };
+    }
+
+    /**
+     * @return the number of watches currently attached to this hub
+     */
+    public int getAttachedCount() {
+        return mWatches.size();
+    }
+
+    /**
+     * @return the clock the hub and its watches read time from
+     */
+    @NonNull
+    public WatchClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Returns the scheduler used to keep the CPU awake in dim mode for watchfaces
+     * that handle seconds in dim mode.
+     */
+    @NonNull
+    public DimModeScheduler getDimModeScheduler() {
+        return mDimModeScheduler;
+    }
+
+    /**
+     * Returns the governor that limits the tick rates and dim mode wakeups of all
+     * watches attached to this hub.
+     */
+    @NonNull
+    public TickGovernor getGovernor() {
+        return mGovernor;
+    }
+
+    /**
+     * Returns the pipeline that refreshes data providers on the ticks and wakeups
+     * of this hub, creating it on first use.
+     */
+    @NonNull
+    public DataPipeline getDataPipeline() {
+        if (mDataPipeline == null) {
+            mDataPipeline = new DataPipeline(mClock, mScheduler);
+        }
+        return mDataPipeline;
+    }
+
+    /**
+     * Returns how many milliseconds after its wall clock second boundary the most
+     * recent second tick was delivered.
+     */
+    public long getLastTickLateness() {
+        return mLastTickLatenessMillis;
+    }
+
+    /**
+     * @return true while the receivers and observer are registered, including
+     *         shortly after the last watch detached
+     */
+    public boolean isRegistered() {
+        return mRegistered;
+    }
+
+    /**
+     * Subscribes a watch to hub events. The first subscription registers the
+     * receivers and observer, unless they are still registered from before.
+     */
+    void attach(@NonNull Watch watch) {
+        if (mWatches.contains(watch)) {
+            return;
+        }
+        mScheduler.removeCallbacks(mUnregister);
+
+        mWatches.add(watch);
+        mDispatchList = mWatches.toArray(new Watch[mWatches.size()]);
+
+        if (!mRegistered) {
+            register();
+        }
+        // Watches waiting detached, e.g. in a WatchSession, miss zone changes
+        watch.replayTimeZone(mSystemZoneId);
+        if (mRegistered && mBatteryLevel >= 0) {
+            // The sticky battery broadcast was already delivered to earlier watches
+            watch.onBatteryReplayed(mBatteryLevel, mBatteryScale, mBatteryPlugged, mBatteryStatus);
+        }
+
+        onDemandChanged();
+    }
+
+    /**
+     * Unsubscribes a watch. The last unsubscription stops the ticker, and releases
+     * the receivers and observer unless another watch attaches soon after.
+     */
+    void detach(@NonNull Watch watch) {
+        if (!mWatches.remove(watch)) {
+            return;
+        }
+
+        mDispatchList = mWatches.toArray(new Watch[mWatches.size()]);
+
+        onDemandChanged();
+
+        if (mWatches.isEmpty() && mRegistered) {
+            mScheduler.postDelayed(mUnregister, UNREGISTER_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Re-evaluates whether any attached watch needs second ticks or dim mode
+     * wakeups, and starts or stops the ticker and alarm accordingly. Watches call
+     * this whenever their requirements change.
+     */
+    void onDemandChanged() {
+        boolean needsTicker = false;
+        boolean needsKeepAwake = false;
+        for (Watch watch : mDispatchList) {
+            needsTicker |= watch.needsSecondTicks();
+            needsKeepAwake |= watch.needsDimModeWakeups();
+        }
+
+        if (needsTicker && !mTicking) {
+            mTicking = true;
+            mTickTargetMillis = 0;
+            mTicker.run();
+        } else if (!needsTicker && mTicking) {
+            mTicking = false;
+            mScheduler.removeCallbacks(mTicker);
+        }
+
+        if (needsKeepAwake) {
+            mDimModeScheduler.start();
+        } else {
+            mDimModeScheduler.stop();
+        }
+    }
+
+    private void scheduleNextTick() {
+        long now = mClock.currentTimeMillis();
+        mTickTargetMillis = now - now % TICK_INTERVAL_MILLIS + TICK_INTERVAL_MILLIS;
+
+        long delay = mTickTargetMillis - now - mTickCorrectionMillis;
+        mScheduler.postDelayed(mTicker, Math.max(0, delay));
+    }
+
+    /**
+     * Restarts the ticker on the new wall clock second boundaries after the
+     * system time was set.
+     */
+    private void realignTicker() {
+        if (mTicking) {
+            mScheduler.removeCallbacks(mTicker);
+            mTickCorrectionMillis = 0;
+            scheduleNextTick();
+        }
+    }
+
+    /**
+     * Settings tend to change in bursts; evaluate them once they settle.
+     */
+    void scheduleFormatSettingsCheck() {
+        mScheduler.removeCallbacks(mFormatSettingsCheck);
+        mScheduler.postDelayed(mFormatSettingsCheck, SETTINGS_DEBOUNCE_MILLIS);
+    }
+
+    private void register() {
+        mRegistered = true;
+        // Zone changes announced while unregistered were missed
+        mSystemZoneId = TimeZone.getDefault().getID();
+
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIME_TICK);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(ACTION_KEEP_WATCHFACE_AWAKE);
+
+        mContext.registerReceiver(mIntentReceiver, filter, null, mHandler);
+        mContext.registerReceiver(mBatInfoReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED), null, mHandler);
+
+        final ContentResolver resolver = mContext.getContentResolver();
+        resolver.registerContentObserver(Settings.System.getUriFor(Settings.System.TIME_12_24),
+                false, mFormatChangeObserver);
+    }
+
+    private void unregister() {
+        mContext.unregisterReceiver(mIntentReceiver);
+        mContext.unregisterReceiver(mBatInfoReceiver);
+        mContext.getContentResolver().unregisterContentObserver(mFormatChangeObserver);
+        mScheduler.removeCallbacks(mFormatSettingsCheck);
+
+        mBatteryLevel = -1;
+        mRegistered = false;
+    }
+
+    void onTimeTick() {
+        for (Watch watch : mDispatchList) {
+            watch.onTimeTick();
+        }
+        onDataTick();
+    }
+
+    void onTimeSet() {
+        realignTicker();
+        for (Watch watch : mDispatchList) {
+            watch.onTimeSet();
+        }
+    }
+
+    void onKeepAwake() {
+        for (Watch watch : mDispatchList) {
+            watch.onKeepAwake();
+        }
+        onDataTick();
+    }
+
+    void onSecondTick() {
+        for (Watch watch : mDispatchList) {
+            watch.onSecondTick();
+        }
+        onDataTick();
+    }
+
+    /**
+     * Lets the data pipeline refresh its providers while the CPU is awake anyway.
+     */
+    private void onDataTick() {
+        if (mDataPipeline != null) {
+            mDataPipeline.onTick();
+        }
+    }
+
+    void onTimeZoneChanged(String timeZoneId) {
+        mSystemZoneId = timeZoneId;
+        for (Watch watch : mDispatchList) {
+            watch.onTimeZoneChanged(timeZoneId);
+        }
+    }
+
+    void onBatteryChanged(int level, int scale, int plugged, int status) {
+        mBatteryLevel = level;
+        mBatteryScale = scale;
+        mBatteryPlugged = plugged;
+        mBatteryStatus = status;
+        int percentage = BatteryState.toPercentage(level, scale);
+        mDimModeScheduler.onBatteryLevelChanged(percentage);
+        boolean governorChanged = mGovernor.onBatteryChanged(percentage,
+                BatteryState.isCharging(plugged, status));
+        for (Watch watch : mDispatchList) {
+            watch.onBatteryChanged(level, scale, plugged, status);
+        }
+        if (governorChanged) {
+            onGovernorChanged();
+        }
+    }
+
+    /**
+     * Applies new governor limits to the dim mode scheduler and every attached
+     * watch.
+     */
+    void onGovernorChanged() {
+        mDimModeScheduler.setGovernedPolicy(mGovernor.getWakePolicy());
+        for (Watch watch : mDispatchList) {
+            watch.onGovernorChanged();
+        }
+        onDemandChanged();
+    }
+
+    void onFormatSettingsChanged() {
+        for (Watch watch : mDispatchList) {
+            watch.onFormatSettingsChanged();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.twotoasters.watchface.gears.widget;
+
+/**
+ * How often a {@link Watch} delivers time updates to its watchface.
+ *
+ * @see Watch#setTickRate(TickRate)
+ */
+public enum TickRate {
+
+    /** Once per hour, when the hour of the day changes. */
+    HOUR,
+
+    /** Once per minute, driven by {@link android.content.Intent#ACTION_TIME_TICK}. */
+    MINUTE,
+
+    /** Once per second, aligned to second boundaries. */
+    SECOND,
+
+    /**
+     * On display frames (VSYNC), capped at {@link Watch#getMaxFrameRate()}.
+     * Only runs while the watchface is active; in dim mode it falls back to
+     * {@link #SECOND} if the face handles seconds in dim mode, or {@link #MINUTE}
+     * otherwise.
+     */
+    CONTINUOUS
+}
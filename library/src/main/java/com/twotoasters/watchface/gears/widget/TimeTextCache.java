@@ -0,0 +1,214 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.Locale;
+
+/**
+ * The current time rendered with the format chosen by a {@link Watch}, kept in
+ * a reusable character buffer.
+ *
+ * The format is split into segments and each segment is only rendered again
+ * when a field it shows changed. Seconds are written directly as digits, so a
+ * typical second tick does not go through Joda-Time at all; everything else is
+ * reprinted on minute, hour, day, time zone or format changes. Rendering does
+ * not allocate once the buffers have grown to fit the format.
+ *
+ * The text is meant to be drawn with
+ * {@link android.graphics.Canvas#drawText(char[], int, int, float, float, android.graphics.Paint)}:
+ * <pre>
+ * TimeTextCache text = watch.getTimeText();
+ * canvas.drawText(text.getBuffer(), 0, text.length(), x, y, paint);
+ * </pre>
+ */
+public class TimeTextCache {
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 8;
+
+    private FormatSegment[] mSegments = new FormatSegment[0];
+    private DateTimeFormatter[] mPrinters = new DateTimeFormatter[0];
+    private char[][] mSegmentText = new char[0][];
+    private int[] mSegmentLength = new int[0];
+
+    private Locale mLocale = Locale.getDefault();
+    private DateTimeZone mZone;
+
+    private final StringBuffer mScratch = new StringBuffer(INITIAL_SEGMENT_CAPACITY);
+    private char[] mBuffer = new char[INITIAL_SEGMENT_CAPACITY * 4];
+    private int mLength;
+
+    private int mPendingChanges = WatchChange.ALL;
+
+    /**
+     * Sets the format to render and sizes the text buffer to its maximum width.
+     */
+    void setFormat(@NonNull WatchFormat format) {
+        mLocale = format.getLocale();
+        mSegments = format.getSegments();
+        if (mBuffer.length < format.getMaxWidth()) {
+            mBuffer = new char[format.getMaxWidth()];
+        }
+
+        int count = mSegments.length;
+        mPrinters = new DateTimeFormatter[count];
+        mSegmentText = new char[count][];
+        mSegmentLength = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            FormatSegment segment = mSegments[i];
+            if (segment.isLiteral()) {
+                mSegmentText[i] = segment.literal.toCharArray();
+                mSegmentLength[i] = mSegmentText[i].length;
+            } else {
+                mSegmentText[i] = new char[INITIAL_SEGMENT_CAPACITY];
+            }
+        }
+
+        createPrinters();
+        mPendingChanges = WatchChange.ALL;
+    }
+
+    void setZone(@NonNull DateTimeZone zone) {
+        if (zone != mZone) {
+            mZone = zone;
+            createPrinters();
+            mPendingChanges |= WatchChange.TIMEZONE;
+        }
+    }
+
+    /**
+     * Records changes reported for an update; the text is rendered lazily on the
+     * next {@link #update(WatchTime)}.
+     */
+    void onTimeChanged(int changes) {
+        mPendingChanges |= changes;
+    }
+
+    /**
+     * Brings the text up to date with the given time, rendering only the segments
+     * affected by the changes recorded since the last update.
+     */
+    void update(@NonNull WatchTime time) {
+        int changes = mPendingChanges;
+        if (changes == 0) {
+            return;
+        }
+        mPendingChanges = 0;
+
+        // Anything coarser than seconds means a full reprint
+        boolean full = (changes & ~(WatchChange.MILLIS | WatchChange.SECOND)) != 0;
+
+        for (int i = 0; i < mSegments.length; i++) {
+            FormatSegment segment = mSegments[i];
+            if (segment.isLiteral()) {
+                continue;
+            }
+
+            if (segment.letter == 's') {
+                if (full || (changes & WatchChange.SECOND) != 0) {
+                    renderNumber(i, time.getSecondOfMinute(), segment.count);
+                }
+            } else if (full || (changes & segment.getChanges()) != 0) {
+                renderPrinter(i, time.getMillis());
+            }
+        }
+
+        compose();
+    }
+
+    /**
+     * @return the number of characters of the rendered text
+     */
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * Returns the buffer holding the rendered text in its first {@link #length()}
+     * characters. The buffer is reused; its contents change on the next update.
+     */
+    @NonNull
+    public char[] getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Copies the rendered text into a caller-supplied buffer.
+     *
+     * @return the number of characters copied
+     * @throws IndexOutOfBoundsException if the text does not fit
+     */
+    public int getChars(@NonNull char[] dest, int destOffset) {
+        System.arraycopy(mBuffer, 0, dest, destOffset, mLength);
+        return mLength;
+    }
+
+    /**
+     * Returns the rendered text as a new String. Allocates; prefer
+     * {@link #getBuffer()} on drawing paths.
+     */
+    @Override
+    public String toString() {
+        return new String(mBuffer, 0, mLength);
+    }
+
+    private void createPrinters() {
+        for (int i = 0; i < mSegments.length; i++) {
+            FormatSegment segment = mSegments[i];
+            if (!segment.isLiteral() && segment.letter != 's') {
+                DateTimeFormatter printer = DateTimeFormat.forPattern(segment.pattern).withLocale(mLocale);
+                mPrinters[i] = mZone != null ? printer.withZone(mZone) : printer;
+            }
+        }
+    }
+
+    private void renderNumber(int index, int value, int minDigits) {
+        int digits = value >= 10 ? 2 : 1;
+        int length = Math.max(digits, minDigits);
+        char[] text = ensureSegmentCapacity(index, length);
+
+        for (int i = length - 1; i >= 0; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        mSegmentLength[index] = length;
+    }
+
+    private void renderPrinter(int index, long millis) {
+        mScratch.setLength(0);
+        mPrinters[index].printTo(mScratch, millis);
+
+        int length = mScratch.length();
+        char[] text = ensureSegmentCapacity(index, length);
+        mScratch.getChars(0, length, text, 0);
+        mSegmentLength[index] = length;
+    }
+
+    private char[] ensureSegmentCapacity(int index, int length) {
+        if (mSegmentText[index].length < length) {
+            mSegmentText[index] = new char[Math.max(length, mSegmentText[index].length * 2)];
+        }
+        return mSegmentText[index];
+    }
+
+    private void compose() {
+        int length = 0;
+        for (int i = 0; i < mSegments.length; i++) {
+            length += mSegmentLength[i];
+        }
+        if (mBuffer.length < length) {
+            mBuffer = new char[Math.max(length, mBuffer.length * 2)];
+        }
+
+        int offset = 0;
+        for (int i = 0; i < mSegments.length; i++) {
+            System.arraycopy(mSegmentText[i], 0, mBuffer, offset, mSegmentLength[i]);
+            offset += mSegmentLength[i];
+        }
+        mLength = length;
+    }
+}
@@ -0,0 +1,53 @@
+package com.twotoasters.watchface.gears.widget;
+
+/**
+ * Sine and cosine by table lookup, for drawing code that runs every frame.
+ *
+ * The table divides a full turn into {@link #RESOLUTION} steps, about 0.09
+ * degrees each, which is well below a pixel at the tip of a hand on any watch
+ * screen. It is computed once and shared by the process.
+ */
+public final class TrigTable {
+
+    /** Number of table entries per full turn. */
+    public static final int RESOLUTION = 4096;
+
+    private static final int MASK = RESOLUTION - 1;
+    private static final int QUARTER_TURN = RESOLUTION / 4;
+    private static final float STEPS_PER_DEGREE = RESOLUTION / 360f;
+
+    private static final float[] SIN = new float[RESOLUTION];
+    static {
+        for (int i = 0; i < RESOLUTION; i++) {
+            SIN[i] = (float) Math.sin(i * 2 * Math.PI / RESOLUTION);
+        }
+    }
+
+    private TrigTable() {
+    }
+
+    /**
+     * @return the table index nearest to the given angle, for use with
+     *         {@link #sinOf(int)} and {@link #cosOf(int)}
+     */
+    public static int indexOf(float degrees) {
+        // Rounds half up; the mask wraps negative angles too
+        return (int) Math.floor(degrees * STEPS_PER_DEGREE + 0.5f) & MASK;
+    }
+
+    public static float sin(float degrees) {
+        return SIN[indexOf(degrees)];
+    }
+
+    public static float cos(float degrees) {
+        return SIN[(indexOf(degrees) + QUARTER_TURN) & MASK];
+    }
+
+    public static float sinOf(int index) {
+        return SIN[index & MASK];
+    }
+
+    public static float cosOf(int index) {
+        return SIN[(index + QUARTER_TURN) & MASK];
+    }
+}
@@ -0,0 +1,121 @@
+package com.twotoasters.watchface.gears.widget;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * A clock and scheduler that only move when told to.
+ *
+ * Time stands still until {@link #advanceBy(long)} is called, which runs every
+ * task that falls due in order, with the clock set to each task's due time.
+ * Days of ticks can so be replayed in milliseconds on a plain JVM. Task
+ * records are pooled, so a long replay does not allocate per tick.
+ *
+ * @see WatchSimulator
+ */
+public class VirtualClock implements WatchClock, WatchScheduler {
+
+    private final PriorityQueue<Task> mTasks = new PriorityQueue<>();
+    private final ArrayList<Task> mPool = new ArrayList<>();
+
+    private long mUptimeMillis;
+    private long mWallOffsetMillis;
+    private long mSequence;
+
+    /**
+     * @param currentTimeMillis the wall clock time to start at
+     */
+    public VirtualClock(long currentTimeMillis) {
+        mWallOffsetMillis = currentTimeMillis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return mWallOffsetMillis + mUptimeMillis;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return mUptimeMillis;
+    }
+
+    /**
+     * Sets the wall clock without moving uptime, like the user setting the time.
+     */
+    public void setCurrentTimeMillis(long currentTimeMillis) {
+        mWallOffsetMillis = currentTimeMillis - mUptimeMillis;
+    }
+
+    @Override
+    public void postDelayed(Runnable runnable, long delayMillis) {
+        Task task = mPool.isEmpty() ? new Task() : mPool.remove(mPool.size() - 1);
+        task.dueMillis = mUptimeMillis + Math.max(0, delayMillis);
+        task.sequence = mSequence++;
+        task.runnable = runnable;
+        mTasks.add(task);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+        Iterator<Task> iterator = mTasks.iterator();
+        while (iterator.hasNext()) {
+            Task task = iterator.next();
+            if (task.runnable == runnable) {
+                iterator.remove();
+                recycle(task);
+            }
+        }
+    }
+
+    /**
+     * Moves time forward, running all tasks that fall due on the way, including
+     * tasks they post themselves.
+     */
+    public void advanceBy(long millis) {
+        advanceTo(mUptimeMillis + millis);
+    }
+
+    /**
+     * Moves uptime forward to the given value, running all tasks that fall due
+     * on the way.
+     */
+    public void advanceTo(long uptimeMillis) {
+        Task task;
+        while ((task = mTasks.peek()) != null && task.dueMillis <= uptimeMillis) {
+            mTasks.poll();
+            mUptimeMillis = Math.max(mUptimeMillis, task.dueMillis);
+            Runnable runnable = task.runnable;
+            recycle(task);
+            runnable.run();
+        }
+        mUptimeMillis = Math.max(mUptimeMillis, uptimeMillis);
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public int getPendingCount() {
+        return mTasks.size();
+    }
+
+    private void recycle(Task task) {
+        task.runnable = null;
+        mPool.add(task);
+    }
+
+    private static final class Task implements Comparable<Task> {
+
+        long dueMillis;
+        long sequence;
+        Runnable runnable;
+
+        @Override
+        public int compareTo(Task other) {
+            if (dueMillis != other.dueMillis) {
+                return dueMillis < other.dueMillis ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.twotoasters.watchface.gears.widget;
+
+/**
+ * How the {@link DimModeScheduler} wakes the CPU while a watchface that
+ * handles seconds in dim mode is shown.
+ */
+public enum WakePolicy {
+
+    /** Wake exactly on every second. Most accurate, most expensive. */
+    EXACT_SECOND,
+
+    /**
+     * Wake once per configured interval, within a window of configured slack so
+     * the system can batch the wakeup with other alarms.
+     *
+     * @see DimModeScheduler#setWindow(long, long)
+     */
+    WINDOWED,
+
+    /** Wake only on minute boundaries. */
+    MINUTE,
+
+    /**
+     * Use {@link #EXACT_SECOND}, {@link #WINDOWED} or {@link #MINUTE} depending on
+     * the current battery level.
+     *
+     * @see DimModeScheduler#setBatteryThresholds(int, int)
+     */
+    BATTERY_AWARE
+}
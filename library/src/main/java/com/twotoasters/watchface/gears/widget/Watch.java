@@ -1,26 +1,15 @@
 package com.twotoasters.watchface.gears.widget;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
-import android.content.ContentResolver;
+import android.app.Activity;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-import android.database.ContentObserver;
-import android.net.Uri;
-import android.os.BatteryManager;
-import android.os.Handler;
-import android.os.SystemClock;
-import android.provider.Settings;
 import android.support.annotation.NonNull;
 import android.text.format.DateFormat;
+import android.view.Choreographer;
 import android.view.ViewDebug.ExportedProperty;
 
+import com.twotoasters.watchface.gears.util.DeviceProfile;
+
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
-import org.joda.time.LocalTime;
-import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.DateTimeFormatterBuilder;
 
@@ -30,9 +19,11 @@ import java.util.TimeZone;
 
 public class Watch {
 
-    private static final LocalTime TEST_TIME = LocalTime.parse("01:02:03");
-
-    private static final String ACTION_KEEP_WATCHFACE_AWAKE = "intent.action.keep.watchface.awake";
+    /**
+     * The frame rate cap used by {@link TickRate#CONTINUOUS} unless changed through
+     * {@link #setMaxFrameRate(int)}.
+     */
+    public static final int DEFAULT_MAX_FRAME_RATE = 30;
 
     /**
      * The default formatting pattern in 12-hour mode. This pattern is used
@@ -69,8 +60,16 @@ public class Watch {
                     .toFormatter();
 
 
-    private DateTimeFormatter mFormat12;
-    private DateTimeFormatter mFormat24;
+    static final String DEFAULT_PATTERN_12_HOUR = "K:mm:ss a";
+    static final String DEFAULT_PATTERN_24_HOUR = "H:mm:ss";
+
+    private WatchFormat mFormat12;
+    private WatchFormat mFormat24;
+
+    private WatchFormat mWatchFormat;
+    private Locale mLocale;
+
+    private final TimeTextCache mTimeText = new TimeTextCache();
 
     @ExportedProperty
     private DateTimeFormatter mFormat;
@@ -80,88 +79,126 @@ public class Watch {
 
     private boolean mAttached;
 
-    private String mTimeZone;
+    private final ZoneCache mZoneCache = new ZoneCache(null);
 
-    private AlarmManager alarmManager;
+    private ZoneCache[] mZoneCaches = new ZoneCache[0];
+    private WatchTime[] mZoneTimes = new WatchTime[0];
 
-    private final ContentObserver mFormatChangeObserver = new ContentObserver(new Handler()) {
-        @Override
-        public void onChange(boolean selfChange) {
-            chooseFormat();
-            onTimeChanged();
-        }
+    private final WatchTime mTime = new WatchTime();
+    private final HandAngles mHandAngles = new HandAngles();
 
-        @Override
-        public void onChange(boolean selfChange, Uri uri) {
-            chooseFormat();
-            onTimeChanged();
-        }
-    };
+    private TickHub mTickHub;
+    private boolean mAttachedToHub;
+    private WatchClock mClock = WatchClock.SYSTEM;
 
-    private final BroadcastReceiver mIntentReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            if (mTimeZone == null && Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
-                mTimeZone = intent.getStringExtra("time-zone");
-            }
+    private TickRate mTickRate;
+    private TickRate mMinTickRate;
+    private int mMaxFrameRate = DEFAULT_MAX_FRAME_RATE;
+    private boolean mActive = true;
+    private boolean mFrameCallbackPosted;
+    private long mLastFrameTimeNanos;
+    private long mLastHourIndex = Long.MIN_VALUE;
 
-            if (!ACTION_KEEP_WATCHFACE_AWAKE.equals(intent.getAction())) {
-                onTimeChanged();
-            }
-        }
-    };
+    private boolean mDispatchOnlyChanges;
+    private int mPendingChanges;
 
-    private BroadcastReceiver mBatInfoReceiver = new BroadcastReceiver(){
-        @Override
-        public void onReceive(Context arg0, Intent intent) {
-            onBatteryLevelChanged(intent.getIntExtra(BatteryManager.EXTRA_LEVEL, 0));
-        }
-    };
+    private WatchMetrics mMetrics;
 
-    private final Runnable mTicker = new Runnable() {
-        public void run() {
-            onTimeChanged();
+    private final BatteryState mBatteryState = new BatteryState();
+    private boolean mBatteryReplayPending;
 
-            long now = SystemClock.uptimeMillis();
-            long next = now + (1000 - now % 1000);
+    private boolean mAmbientModeEnabled;
+    private final AmbientMode mAmbientMode = new AmbientMode();
+    private boolean mAmbientReplayPending;
 
-            if (hasWatchface())
-                getWatchface().getHandler().postAtTime(mTicker, next);
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameCallbackPosted = false;
+            if (getEffectiveTickRate() != TickRate.CONTINUOUS) {
+                return;
+            }
+
+            // Allow a little slack so a 30 fps cap on a 60 Hz display hits every other frame
+            long minIntervalNanos = 1000000000L / getEffectiveMaxFrameRate();
+            if (frameTimeNanos - mLastFrameTimeNanos >= minIntervalNanos - minIntervalNanos / 4) {
+                mLastFrameTimeNanos = frameTimeNanos;
+                dispatch(DispatchSource.FRAME, 0);
+            }
+
+            postFrameCallback();
         }
     };
 
     private WeakReference<IWatchface> watchfaceRef;
 
     public Watch(IWatchface watchface) {
+        this(watchface, null);
+    }
+
+    /**
+     * Returns the watch kept for this watchface by the {@link WatchSession} of its
+     * activity or application, bound to the watchface, or a new watch if there is
+     * no session. Watchfaces should prefer this over the constructor so their
+     * watch survives recreation.
+     *
+     * @param key identifies the watchface across recreation; watchfaces shown at
+     *            the same time need different keys, e.g. based on their view ID
+     */
+    @NonNull
+    public static Watch obtain(@NonNull IWatchface watchface, @NonNull String key) {
+        WatchSession session = WatchSession.get(watchface.getContext());
+        return session != null ? session.obtain(watchface, key) : new Watch(watchface);
+    }
+
+    /**
+     * Creates a watch that attaches to the given hub and reads time from its
+     * clock, instead of the process-wide hub.
+     *
+     * @see WatchSimulator
+     */
+    public Watch(IWatchface watchface, TickHub tickHub) {
         if (watchface == null) {
             throw new AssertionError("Watchface can not be null");
         }
 
         watchfaceRef = new WeakReference<>(watchface);
+        if (tickHub != null) {
+            mTickHub = tickHub;
+            mClock = tickHub.getClock();
+        }
         init();
     }
 
 
     private void init() {
+        long start = System.nanoTime();
+        mLocale = getWatchface().getContext().getResources().getConfiguration().locale;
+
+        // Use the formats of the startup warm-up if they are ready, never wait for them
+        WatchWarmup warmup = WatchWarmup.getInstance();
+        if (warmup != null) {
+            mFormat12 = warmup.getFormat12(mLocale);
+            mFormat24 = warmup.getFormat24(mLocale);
+        }
+        boolean warm = mFormat12 != null && mFormat24 != null;
+
         if (mFormat12 == null || mFormat24 == null) {
-            Locale locale = getWatchface().getContext().getResources().getConfiguration().locale;
             if (mFormat12 == null) {
-                mFormat12 = DEFAULT_FORMAT_12_HOUR.withLocale(locale);
+                mFormat12 = new WatchFormat(DEFAULT_PATTERN_12_HOUR,
+                        DEFAULT_FORMAT_12_HOUR.withLocale(mLocale), mLocale);
             }
             if (mFormat24 == null) {
-                mFormat24 = DEFAULT_FORMAT_24_HOUR.withLocale(locale);
+                mFormat24 = new WatchFormat(DEFAULT_PATTERN_24_HOUR,
+                        DEFAULT_FORMAT_24_HOUR.withLocale(mLocale), mLocale);
             }
         }
 
-        initAlarmManager();
-
         // Wait until onAttachedToWindow() to handle the ticker
         chooseFormat(false);
-    }
 
-    private void initAlarmManager() {
-        if(alarmManager == null && notInEditMode()) {
-            alarmManager = (AlarmManager) getWatchface().getContext().getSystemService(Context.ALARM_SERVICE);
+        if (warmup != null) {
+            warmup.onWatchCreated(start, warm);
         }
     }
 
@@ -186,7 +223,7 @@ public class Watch {
     @ExportedProperty
     @NonNull
     public DateTimeFormatter getFormat12Hour() {
-        return mFormat12;
+        return mFormat12.getFormatter();
     }
 
     /**
@@ -215,10 +252,10 @@ public class Watch {
      * @attr ref android.R.styleable#TextClock_format12Hour
      */
     public void setFormat12Hour(@NonNull CharSequence format) {
-        mFormat12 = DateTimeFormat.forPattern(format.toString());
+        mFormat12 = WatchFormat.compile(format.toString(), mLocale);
 
         chooseFormat();
-        onTimeChanged();
+        onTimeChanged(WatchChange.FORMAT);
     }
 
     /**
@@ -234,7 +271,7 @@ public class Watch {
     @ExportedProperty
     @NonNull
     public DateTimeFormatter getFormat24Hour() {
-        return mFormat24;
+        return mFormat24.getFormatter();
     }
 
     /**
@@ -262,10 +299,10 @@ public class Watch {
      * @attr ref android.R.styleable#TextClock_format24Hour
      */
     public void setFormat24Hour(@NonNull CharSequence format) {
-        mFormat24 = DateTimeFormat.forPattern(format.toString());
+        mFormat24 = WatchFormat.compile(format.toString(), mLocale);
 
         chooseFormat();
-        onTimeChanged();
+        onTimeChanged(WatchChange.FORMAT);
     }
 
     /**
@@ -292,11 +329,7 @@ public class Watch {
 
     @SuppressWarnings("unused")
     public DateTime getTime() {
-        if(mTimeZone == null) {
-            return DateTime.now();
-        } else {
-            return DateTime.now(DateTimeZone.forID(mTimeZone));
-        }
+        return new DateTime(mClock.currentTimeMillis(), mZoneCache.getZone());
     }
 
     /**
@@ -311,7 +344,7 @@ public class Watch {
      */
     @NonNull
     public String getTimeZone() {
-        return mTimeZone;
+        return mZoneCache.getZoneId();
     }
 
     /**
@@ -330,9 +363,60 @@ public class Watch {
      * @attr ref android.R.styleable#TextClock_timeZone
      */
     public void setTimeZone(@NonNull String timeZone) {
-        mTimeZone = timeZone;
+        mZoneCache.setZoneId(timeZone);
 
-        onTimeChanged();
+        onTimeChanged(WatchChange.TIMEZONE);
+    }
+
+    /**
+     * <p>Sets the time zones of a world clock. On every update, each zone gets its
+     * own {@link WatchTime}, available through {@link #getZoneTime(int)} while the
+     * watchface handles the update on the main thread.</p>
+     *
+     * <p>Each zone caches its UTC offset until its next daylight saving time
+     * transition, so an update costs a few arithmetic operations per zone. The
+     * zones are independent of {@link #setTimeZone(String)}.</p>
+     *
+     * @param zoneIds the IDs of the zones, as specified in {@link TimeZone}; a null
+     *                ID follows the system time zone
+     */
+    public void setZones(@NonNull String... zoneIds) {
+        ZoneCache[] zoneCaches = new ZoneCache[zoneIds.length];
+        WatchTime[] zoneTimes = new WatchTime[zoneIds.length];
+        for (int i = 0; i < zoneIds.length; i++) {
+            zoneCaches[i] = new ZoneCache(zoneIds[i]);
+            zoneTimes[i] = new WatchTime();
+        }
+        mZoneCaches = zoneCaches;
+        mZoneTimes = zoneTimes;
+
+        onTimeChanged(WatchChange.TIMEZONE);
+    }
+
+    /**
+     * @return the number of zones set through {@link #setZones(String...)}
+     */
+    public int getZoneCount() {
+        return mZoneCaches.length;
+    }
+
+    /**
+     * @return the ID of the zone at the given index, or null if it follows the
+     *         system time zone
+     */
+    public String getZoneId(int index) {
+        return mZoneCaches[index].getZoneId();
+    }
+
+    /**
+     * Returns the time in the zone at the given index. Like {@link #getWatchTime()},
+     * it is updated in place on the main thread and its {@link WatchChange} flags
+     * describe what changed in that zone. Render threads read the copy handed to
+     * them instead, e.g. {@link SurfaceWatchface#getFrameZoneTime(int)}.
+     */
+    @NonNull
+    public WatchTime getZoneTime(int index) {
+        return mZoneTimes[index];
     }
 
     /**
@@ -341,8 +425,16 @@ public class Watch {
      *
      * Calling this method does not schedule or unschedule the time ticker.
      */
-    private void chooseFormat() {
-        chooseFormat(true);
+    private boolean chooseFormat() {
+        return chooseFormat(true);
+    }
+
+    /**
+     * Returns the description of the current format.
+     */
+    @NonNull
+    public WatchFormat getWatchFormat() {
+        return mWatchFormat;
     }
 
     /**
@@ -356,35 +448,256 @@ public class Watch {
         return mFormat;
     }
 
+    /**
+     * Returns the current time rendered with the current format. The text is
+     * brought up to date incrementally on each call and lives in a reused buffer,
+     * so calling this on every tick does not allocate.
+     *
+     * @see TimeTextCache
+     */
+    @NonNull
+    public TimeTextCache getTimeText() {
+        mTimeText.setZone(mZoneCache.getZone());
+        mTimeText.update(mTime);
+        return mTimeText;
+    }
+
+    /**
+     * Writes the current time rendered with the current format into a
+     * caller-supplied buffer.
+     *
+     * @return the number of characters written
+     * @see #getTimeText()
+     */
+    public int getTimeText(@NonNull char[] dest, int destOffset) {
+        return getTimeText().getChars(dest, destOffset);
+    }
+
     /**
      * Selects either one of {@link #getFormat12Hour()} or {@link #getFormat24Hour()}
      * depending on whether the user has selected 24-hour format.
      *
      * @param handleTicker true if calling this method should schedule/unschedule the
      *                     time ticker, false otherwise
+     * @return true if the chosen format or whether it shows seconds changed
      */
-    private void chooseFormat(boolean handleTicker) {
+    private boolean chooseFormat(boolean handleTicker) {
+        final DateTimeFormatter previousFormat = mFormat;
         final boolean format24Requested = is24HourModeEnabled();
 
         //LocaleData ld = LocaleData.get(getContext().getResources().getConfiguration().locale);
 
+        final WatchFormat previousWatchFormat = mWatchFormat;
         if (format24Requested) {
-            mFormat = firstNonNull(mFormat24, mFormat12, DEFAULT_FORMAT_12_HOUR);
+            mWatchFormat = firstNonNull(mFormat24, mFormat12);
         } else {
-            mFormat = firstNonNull(mFormat12, mFormat24, DEFAULT_FORMAT_24_HOUR);
+            mWatchFormat = firstNonNull(mFormat12, mFormat24);
+        }
+        mFormat = mWatchFormat.getFormatter();
+
+        if (mWatchFormat != previousWatchFormat) {
+            mTimeText.setFormat(mWatchFormat);
         }
 
         boolean hadSeconds = mHasSeconds;
-        mHasSeconds = mFormat.print(TEST_TIME).contains("03");
+        mHasSeconds = mWatchFormat.hasSeconds();
 
-        if (hasWatchface()) {
-            if (handleTicker && mAttached && hadSeconds != mHasSeconds) {
-                if (hadSeconds) getWatchface().getHandler().removeCallbacks(mTicker);
-                else mTicker.run();
+        if (handleTicker && (previousWatchFormat == null
+                || previousWatchFormat.getTickRate() != mWatchFormat.getTickRate())) {
+            applyTickRate();
+        }
+
+        return previousFormat != mFormat || hadSeconds != mHasSeconds;
+    }
+
+    /**
+     * Sets how often time updates are delivered to the watchface. The rate can be
+     * changed at any time, including while the watch is attached.
+     *
+     * @param tickRate the desired rate, or null to pick the slowest rate that shows
+     *                 every change of the current format, at least once a minute.
+     *                 {@link TickRate#SECOND} keeps ticking every second in ambient
+     *                 mode, a rate picked from a format with seconds does not.
+     *
+     * @see WatchFormat#getTickRate()
+     */
+    public void setTickRate(TickRate tickRate) {
+        mTickRate = tickRate;
+        applyTickRate();
+    }
+
+    /**
+     * @return the rate set through {@link #setTickRate(TickRate)}, or null if it is
+     *         derived from the format
+     */
+    public TickRate getTickRate() {
+        return mTickRate;
+    }
+
+    /**
+     * Declares the slowest rate this watchface can live with. The hub's
+     * {@link TickGovernor} does not slow the watch down below this rate, but it is
+     * never faster than the rate the watch asks for either.
+     *
+     * @param minTickRate the minimum rate, or null to let the governor decide
+     */
+    public void setMinTickRate(TickRate minTickRate) {
+        mMinTickRate = minTickRate;
+        applyTickRate();
+    }
+
+    public TickRate getMinTickRate() {
+        return mMinTickRate;
+    }
+
+    /**
+     * Returns the rate at which updates are currently delivered, taking the format,
+     * the active state of the watchface and the hub's {@link TickGovernor} into
+     * account.
+     */
+    @NonNull
+    public TickRate getEffectiveTickRate() {
+        TickRate tickRate = mTickRate;
+        if (tickRate == null) {
+            tickRate = mWatchFormat.getTickRate();
+        }
+        if (mTickHub != null) {
+            tickRate = mTickHub.getGovernor().clamp(tickRate, mMinTickRate, mActive);
+        }
+        if (tickRate == TickRate.CONTINUOUS && !mActive) {
+            tickRate = needsDimModeWakeups() ? TickRate.SECOND : TickRate.MINUTE;
+        }
+        if (tickRate == TickRate.SECOND && !mActive && mAmbientModeEnabled
+                && !needsDimModeWakeups() && mTickRate != TickRate.SECOND
+                && mMinTickRate != TickRate.SECOND && mMinTickRate != TickRate.CONTINUOUS) {
+            // Ambient mode only shows seconds that were asked for explicitly
+            tickRate = TickRate.MINUTE;
+        }
+        return tickRate;
+    }
+
+    /**
+     * Caps the number of updates per second delivered in {@link TickRate#CONTINUOUS}
+     * mode. Updates stay aligned to display frames, so the effective rate is the
+     * highest divisor of the display refresh rate not above this cap.
+     */
+    public void setMaxFrameRate(int maxFrameRate) {
+        if (maxFrameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+        mMaxFrameRate = maxFrameRate;
+    }
+
+    public int getMaxFrameRate() {
+        return mMaxFrameRate;
+    }
+
+    /**
+     * Returns the frame rate cap currently in use, which the hub's
+     * {@link TickGovernor} may set lower than {@link #getMaxFrameRate()}.
+     */
+    public int getEffectiveMaxFrameRate() {
+        int governed = mTickHub != null ? mTickHub.getGovernor().getMaxFrameRate(mActive) : 0;
+        return governed > 0 ? Math.min(governed, mMaxFrameRate) : mMaxFrameRate;
+    }
+
+    /**
+     * Watchfaces should delegate {@link IWatchface#onActiveStateChanged(boolean)}
+     * to this method. Continuous updates stop while the watchface is not active.
+     */
+    public void onActiveStateChanged(boolean active) {
+        if (mActive != active) {
+            mActive = active;
+            updateAmbientMode();
+            applyTickRate();
+            onTimeChanged(WatchChange.ACTIVE_STATE);
+        }
+    }
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * Enables the ambient rendering mode. While the watchface is not active it is
+     * then asked to draw its ambient style, see {@link AmbientMode} and
+     * {@link IAmbientListener}, and is updated on minute boundaries unless it
+     * handles seconds in dim mode, set {@link TickRate#SECOND} as its tick rate
+     * or declared it as its minimum rate.
+     */
+    public void setAmbientModeEnabled(boolean enabled) {
+        if (mAmbientModeEnabled != enabled) {
+            mAmbientModeEnabled = enabled;
+            boolean changed = updateAmbientMode();
+            applyTickRate();
+            if (changed) {
+                onTimeChanged(WatchChange.ACTIVE_STATE);
             }
         }
     }
 
+    public boolean isAmbientModeEnabled() {
+        return mAmbientModeEnabled;
+    }
+
+    /**
+     * Returns the ambient mode of this watch. It is updated in place when the
+     * active state changes and on minute boundaries.
+     */
+    @NonNull
+    public AmbientMode getAmbientMode() {
+        return mAmbientMode;
+    }
+
+    /**
+     * @return true if the watchface entered or left ambient mode
+     */
+    private boolean updateAmbientMode() {
+        boolean ambient = mAmbientModeEnabled && !mActive;
+        if (!ambient && !mAmbientMode.isAmbient()) {
+            return false;
+        }
+
+        // Computed once per process, so reading it on every switch is cheap
+        DeviceProfile profile = hasWatchface()
+                ? DeviceProfile.get(getWatchface().getContext()) : DeviceProfile.peek();
+        if (!mAmbientMode.setAmbient(ambient, profile, mClock.currentTimeMillis())) {
+            return false;
+        }
+        notifyAmbientModeChanged();
+        return true;
+    }
+
+    private void notifyAmbientModeChanged() {
+        IWatchface watchface = getWatchface();
+        if (watchface instanceof IAmbientListener) {
+            ((IAmbientListener) watchface).onAmbientModeChanged(mAmbientMode);
+        }
+    }
+
+    private void applyTickRate() {
+        if (mAttachedToHub) {
+            mTickHub.onDemandChanged();
+        }
+        updateFrameCallback();
+    }
+
+    private void updateFrameCallback() {
+        if (mAttached && getEffectiveTickRate() == TickRate.CONTINUOUS) {
+            postFrameCallback();
+        } else if (mFrameCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFrameCallbackPosted = false;
+        }
+    }
+
+    private void postFrameCallback() {
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
     /**
      * Returns the first item that is not null
      */
@@ -402,95 +715,346 @@ public class Watch {
         if (!mAttached) {
             mAttached = true;
 
-            registerReceiver();
-            registerObserver();
+            if (hasWatchface() && notInEditMode()) {
+                if (mTickHub == null) {
+                    mTickHub = TickHub.getInstance(getWatchface().getContext());
+                    mClock = mTickHub.getClock();
+                }
+                mTickHub.attach(this);
+                mAttachedToHub = true;
+            }
 
-            if (hasWatchface() && getWatchface().handleSecondsInDimMode()) {
-                alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, System.currentTimeMillis() + 1000, 1000, getPendingIntent());
+            long start = System.nanoTime();
+            if (mAmbientReplayPending) {
+                mAmbientReplayPending = false;
+                notifyAmbientModeChanged();
             }
+            applyTickRate();
+            onTimeChanged();
 
-            if (mHasSeconds) {
-                mTicker.run();
-            } else {
-                onTimeChanged();
+            // Still pending if the hub had no battery state to replay yet
+            if (mBatteryReplayPending && hasWatchface()) {
+                mBatteryReplayPending = false;
+                getWatchface().onBatteryLevelChanged(mBatteryState.getPercentage());
+            }
+
+            WatchWarmup warmup = WatchWarmup.getInstance();
+            if (warmup != null) {
+                warmup.onWatchUpdated(start);
             }
         }
     }
 
-    public void onDetachedFromWindow() {
-        if (mAttached) {
-            unregisterReceiver();
-            unregisterObserver();
+    boolean isAttached() {
+        return mAttached;
+    }
+
+    /**
+     * @return true while the watchface this watch was last bound to may still use
+     *         it, i.e. it was not garbage collected and its activity is not destroyed
+     */
+    boolean isBound() {
+        IWatchface watchface = getWatchface();
+        if (watchface == null) {
+            return false;
+        }
+        Context context = watchface.getContext();
+        return !(context instanceof Activity) || !((Activity) context).isDestroyed();
+    }
 
-            if (hasWatchface()) {
-                getWatchface().getHandler().removeCallbacks(mTicker);
+    boolean isBoundTo(@NonNull IWatchface watchface) {
+        return getWatchface() == watchface;
+    }
 
-                if (getWatchface().handleSecondsInDimMode()) {
-                    alarmManager.cancel(getPendingIntent());
-                }
+    /**
+     * Hands this watch, while detached, to a new instance of its watchface. The
+     * formats are only recompiled if the locale changed.
+     */
+    void rebind(@NonNull IWatchface watchface) {
+        watchfaceRef = new WeakReference<>(watchface);
+
+        Locale locale = watchface.getContext().getResources().getConfiguration().locale;
+        if (!locale.equals(mLocale)) {
+            mLocale = locale;
+            mFormat12 = WatchFormat.compile(mFormat12.getPattern(), locale);
+            mFormat24 = WatchFormat.compile(mFormat24.getPattern(), locale);
+        }
+        chooseFormat(false);
+
+        // The new watchface has not seen anything yet
+        mPendingChanges |= WatchChange.ALL;
+        mBatteryReplayPending = mBatteryState.getPercentage() >= 0;
+        mAmbientReplayPending = mAmbientMode.isAmbient();
+    }
+
+    public void onDetachedFromWindow() {
+        if (mAttached) {
+            if (mAttachedToHub) {
+                mAttachedToHub = false;
+                mTickHub.detach(this);
             }
 
             mAttached = false;
+            applyTickRate();
         }
     }
 
-    private PendingIntent getPendingIntent() {
-        return hasWatchface()
-                ? PendingIntent.getBroadcast(getWatchface().getContext(), 0,
-                new Intent(ACTION_KEEP_WATCHFACE_AWAKE), 0) : null;
+    /**
+     * @return true if the {@link TickHub} should deliver {@link #onSecondTick()}
+     */
+    boolean needsSecondTicks() {
+        return getEffectiveTickRate() == TickRate.SECOND;
     }
 
-    private void registerReceiver() {
-        final IntentFilter filter = new IntentFilter();
+    /**
+     * @return true if the {@link TickHub} should keep the CPU awake in dim mode,
+     *         i.e. the watchface handles seconds in dim mode and the hub's
+     *         {@link TickGovernor} still lets it tick every second there
+     */
+    boolean needsDimModeWakeups() {
+        if (!hasWatchface() || !getWatchface().handleSecondsInDimMode()) {
+            return false;
+        }
+        return mTickHub == null
+                || mTickHub.getGovernor().clamp(TickRate.SECOND, mMinTickRate, false) == TickRate.SECOND;
+    }
 
-        filter.addAction(Intent.ACTION_TIME_TICK);
-        filter.addAction(Intent.ACTION_TIME_CHANGED);
-        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
-        filter.addAction(ACTION_KEEP_WATCHFACE_AWAKE);
+    /**
+     * Called when the hub's {@link TickGovernor} limits changed. The hub
+     * re-evaluates its ticker afterwards.
+     */
+    void onGovernorChanged() {
+        updateFrameCallback();
+    }
 
-        if (hasWatchface()) {
-            getWatchface().getContext()
-                    .registerReceiver(mIntentReceiver, filter, null, getWatchface().getHandler());
-            getWatchface().getContext()
-                    .registerReceiver(mBatInfoReceiver,
-                            new IntentFilter(Intent.ACTION_BATTERY_CHANGED), null,
-                            getWatchface().getHandler());
+    void onTimeTick() {
+        TickRate tickRate = getEffectiveTickRate();
+        if (tickRate == TickRate.HOUR) {
+            long now = mClock.currentTimeMillis();
+            long hourIndex = (now + mZoneCache.getOffset(now)) / (60 * 60 * 1000L);
+            if (hourIndex == mLastHourIndex) {
+                return;
+            }
+            mLastHourIndex = hourIndex;
+        } else if (tickRate == TickRate.CONTINUOUS) {
+            // Frames already deliver the current time
+            return;
         }
+        dispatch(DispatchSource.TIME_TICK, 0);
     }
 
-    private void registerObserver() {
-        if (hasWatchface()) {
-            final Context context = getWatchface().getContext();
-            final ContentResolver resolver = context.getContentResolver();
-            resolver.registerContentObserver(Settings.System.CONTENT_URI, true,
-                    mFormatChangeObserver);
+    void onTimeSet() {
+        dispatch(DispatchSource.TIME_SET, 0);
+    }
+
+    void onSecondTick() {
+        if (getEffectiveTickRate() == TickRate.SECOND) {
+            if (mMetrics != null && mAttachedToHub) {
+                mMetrics.recordTickLateness(mTickHub.getLastTickLateness());
+            }
+            dispatch(DispatchSource.TICKER, 0);
         }
     }
 
-    private void unregisterReceiver() {
-        if (hasWatchface()) {
-            getWatchface().getContext().unregisterReceiver(mIntentReceiver);
-            getWatchface().getContext().unregisterReceiver(mBatInfoReceiver);
+    void onTimeZoneChanged(String timeZoneId) {
+        mZoneCache.setSystemZoneId(timeZoneId);
+        for (ZoneCache zoneCache : mZoneCaches) {
+            zoneCache.setSystemZoneId(timeZoneId);
         }
+        dispatch(DispatchSource.TIME_ZONE, WatchChange.TIMEZONE);
     }
 
-    private void unregisterObserver() {
-        if (hasWatchface()) {
-            final Context context = getWatchface().getContext();
-            final ContentResolver resolver = context.getContentResolver();
-            resolver.unregisterContentObserver(mFormatChangeObserver);
+    /**
+     * Catches up on a system time zone change missed while detached, e.g. while
+     * kept in a {@link WatchSession}. The update that follows attaching reports it.
+     */
+    void replayTimeZone(String timeZoneId) {
+        boolean changed = mZoneCache.replaySystemZoneId(timeZoneId);
+        for (ZoneCache zoneCache : mZoneCaches) {
+            changed |= zoneCache.replaySystemZoneId(timeZoneId);
+        }
+        if (changed) {
+            mPendingChanges |= WatchChange.TIMEZONE;
         }
     }
 
+    void onFormatSettingsChanged() {
+        if (chooseFormat()) {
+            dispatch(DispatchSource.SETTINGS, WatchChange.FORMAT);
+        }
+    }
+
+    /**
+     * Called when a dim mode wakeup alarm was delivered. Only counted; the ticker
+     * delivers the time.
+     */
+    void onKeepAwake() {
+        if (mMetrics != null) {
+            mMetrics.recordDispatch(DispatchSource.ALARM);
+        }
+    }
+
+    /**
+     * Enables metrics for this watch, or disables them when null. The same
+     * instance may be shared by several watches.
+     */
+    public void setMetrics(WatchMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * @return the metrics recorded for this watch, or null if not enabled
+     */
+    public WatchMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Returns the snapshot delivered to {@link IWatchTimeListener}s. It is updated
+     * in place on every tick.
+     */
+    @NonNull
+    public WatchTime getWatchTime() {
+        return mTime;
+    }
+
+    /**
+     * Returns the hand angles of the time in {@link #getWatchTime()}. They are
+     * brought up to date on each call, and only as far as the time changed, so
+     * faces without hands pay nothing for them.
+     *
+     * A face that draws on another thread, like {@link SurfaceWatchface}, should
+     * keep its own {@link HandAngles} and update it from the time it draws.
+     */
+    @NonNull
+    public HandAngles getHandAngles() {
+        mHandAngles.update(mTime);
+        return mHandAngles;
+    }
+
+    /**
+     * <p>Controls whether updates are delivered even when nothing visible changed.</p>
+     *
+     * <p>When enabled, an update is only delivered if at least one
+     * {@link WatchChange} flag is set, ignoring {@link WatchChange#MILLIS} unless the
+     * tick rate is {@link TickRate#CONTINUOUS}. Duplicate deliveries, such as a
+     * minute tick and a second tick within the same second, collapse into one.
+     * Battery level changes are then also reported as an update with
+     * {@link WatchChange#BATTERY} set, in addition to
+     * {@link IWatchface#onBatteryLevelChanged(int)}.</p>
+     *
+     * <p>The flags are always available through {@link WatchTime#getChanges()},
+     * whether this is enabled or not.</p>
+     */
+    public void setDispatchOnlyChanges(boolean dispatchOnlyChanges) {
+        mDispatchOnlyChanges = dispatchOnlyChanges;
+    }
+
+    public boolean isDispatchOnlyChanges() {
+        return mDispatchOnlyChanges;
+    }
+
+    private void onTimeChanged(int changes) {
+        dispatch(DispatchSource.API, changes);
+    }
+
     private void onTimeChanged() {
-        if (hasWatchface()) {
-            getWatchface().onTimeChanged(DateTime.now());
+        dispatch(DispatchSource.API, 0);
+    }
+
+    private void dispatch(DispatchSource source, int changes) {
+        mPendingChanges |= changes;
+        if (!hasWatchface()) {
+            return;
+        }
+        IWatchface watchface = getWatchface();
+        WatchMetrics metrics = mMetrics;
+
+        long now = mClock.currentTimeMillis();
+        int pendingChanges = mPendingChanges;
+        mPendingChanges = 0;
+        mTime.set(now, mZoneCache.getOffset(now), pendingChanges);
+        if (mAmbientMode.isAmbient() && mTime.hasChanged(WatchChange.MINUTE)) {
+            mAmbientMode.updateOffset(now);
+        }
+
+        ZoneCache[] zoneCaches = mZoneCaches;
+        WatchTime[] zoneTimes = mZoneTimes;
+        int zoneChanges = 0;
+        for (int i = 0; i < zoneTimes.length; i++) {
+            zoneTimes[i].set(now, zoneCaches[i].getOffset(now), pendingChanges);
+            zoneChanges |= zoneTimes[i].getChanges();
+        }
+        mTimeText.onTimeChanged(mTime.getChanges());
+
+        // A day or offset change in any zone is worth an update
+        int visibleChanges = mTime.getChanges() | zoneChanges;
+        if (getEffectiveTickRate() != TickRate.CONTINUOUS) {
+            visibleChanges &= ~WatchChange.MILLIS;
+        }
+
+        if (metrics != null) {
+            metrics.recordDispatch(source);
+            if ((mTime.getChanges() & ~WatchChange.MILLIS) == 0) {
+                metrics.recordDuplicate();
+            }
+        }
+
+        if (mDispatchOnlyChanges && visibleChanges == 0) {
+            if (metrics != null) {
+                metrics.recordSuppressed();
+            }
+            return;
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        if (watchface instanceof IWatchTimeListener) {
+            ((IWatchTimeListener) watchface).onTimeChanged(mTime);
+        } else {
+            watchface.onTimeChanged(new DateTime(now, mZoneCache.getZone()));
+        }
+        if (metrics != null) {
+            metrics.recordCallbackDuration(System.nanoTime() - start);
         }
     }
 
-    private void onBatteryLevelChanged(int percentage) {
+    /**
+     * Returns the battery tracker of this watch, which can be configured to
+     * report fewer changes.
+     */
+    @NonNull
+    public BatteryState getBatteryState() {
+        return mBatteryState;
+    }
+
+    void onBatteryChanged(int level, int scale, int plugged, int status) {
+        if (!mBatteryState.update(level, scale, plugged, status)) {
+            return;
+        }
+
         if (hasWatchface()) {
-            getWatchface().onBatteryLevelChanged(percentage);
+            getWatchface().onBatteryLevelChanged(mBatteryState.getPercentage());
+
+            if (mDispatchOnlyChanges) {
+                dispatch(DispatchSource.BATTERY, WatchChange.BATTERY);
+            } else if (mMetrics != null) {
+                mMetrics.recordDispatch(DispatchSource.BATTERY);
+            }
+        }
+    }
+
+    /**
+     * Hands the battery state the hub already received to this watch when it
+     * attaches. A watchface that was just bound to this watch hears about it even
+     * if nothing changed, but only once.
+     */
+    void onBatteryReplayed(int level, int scale, int plugged, int status) {
+        boolean changed = mBatteryState.replay(level, scale, plugged, status);
+        if ((changed || mBatteryReplayPending) && hasWatchface()) {
+            mBatteryReplayPending = false;
+            getWatchface().onBatteryLevelChanged(mBatteryState.getPercentage());
+            // Reported by the update that follows attaching
+            mPendingChanges |= WatchChange.BATTERY;
         }
     }
 
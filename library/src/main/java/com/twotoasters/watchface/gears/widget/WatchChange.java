@@ -0,0 +1,27 @@
+package com.twotoasters.watchface.gears.widget;
+
+/**
+ * Flags describing what changed since the previous update delivered by a
+ * {@link Watch}, as returned by {@link WatchTime#getChanges()}.
+ *
+ * Time flags are set whenever the respective field rolled over, so a minute
+ * change always also sets {@link #SECOND} and {@link #MILLIS}.
+ */
+public final class WatchChange {
+
+    public static final int MILLIS = 1;
+    public static final int SECOND = 1 << 1;
+    public static final int MINUTE = 1 << 2;
+    public static final int HOUR = 1 << 3;
+    public static final int DAY = 1 << 4;
+    public static final int TIMEZONE = 1 << 5;
+    public static final int FORMAT = 1 << 6;
+    public static final int BATTERY = 1 << 7;
+    public static final int ACTIVE_STATE = 1 << 8;
+
+    public static final int ALL = MILLIS | SECOND | MINUTE | HOUR | DAY
+            | TIMEZONE | FORMAT | BATTERY | ACTIVE_STATE;
+
+    private WatchChange() {
+    }
+}
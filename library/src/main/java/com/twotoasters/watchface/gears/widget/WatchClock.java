@@ -0,0 +1,34 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.os.SystemClock;
+
+/**
+ * Source of time for a {@link TickHub} and the watches attached to it.
+ *
+ * {@link #SYSTEM} reads the device clocks. {@link VirtualClock} can be used
+ * instead to replay long stretches of time without waiting for them.
+ */
+public interface WatchClock {
+
+    /**
+     * The device clocks: {@link System#currentTimeMillis()} and
+     * {@link SystemClock#uptimeMillis()}.
+     */
+    public static final WatchClock SYSTEM = new WatchClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+    };
+
+    // Wall clock time in milliseconds since the epoch, may jump
+    public long currentTimeMillis();
+
+    // Monotonic time in milliseconds, the time base of WatchScheduler
+    public long uptimeMillis();
+}
@@ -0,0 +1,188 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+
+/**
+ * A time format compiled once from its pattern, describing which fields it
+ * shows and how wide it can get.
+ *
+ * {@link Watch} compiles its formats when they are set and uses the
+ * description to pick the tick rate and to size text buffers, instead of
+ * printing a test time to find out.
+ */
+public final class WatchFormat {
+
+    private static final int MAX_ZONE_NAME_WIDTH = 32;
+
+    private final String mPattern;
+    private final DateTimeFormatter mFormatter;
+    private final Locale mLocale;
+    private final FormatSegment[] mSegments;
+    private final int mFields;
+    private final int mMaxWidth;
+
+    /**
+     * Compiles a pattern in the syntax of {@link DateTimeFormat#forPattern(String)}.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    public static WatchFormat compile(@NonNull String pattern, @NonNull Locale locale) {
+        return new WatchFormat(pattern, DateTimeFormat.forPattern(pattern).withLocale(locale), locale);
+    }
+
+    /**
+     * @param pattern   the pattern equivalent to the formatter, used to describe it
+     * @param formatter the formatter to print with
+     */
+    WatchFormat(@NonNull String pattern, @NonNull DateTimeFormatter formatter, @NonNull Locale locale) {
+        mPattern = pattern;
+        mFormatter = formatter;
+        mLocale = locale;
+        mSegments = FormatSegment.parse(pattern);
+
+        DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+        int fields = 0;
+        int maxWidth = 0;
+        for (FormatSegment segment : mSegments) {
+            fields |= segment.getChanges();
+            maxWidth += getMaxWidth(segment, symbols);
+        }
+        mFields = fields;
+        mMaxWidth = maxWidth;
+    }
+
+    @NonNull
+    public String getPattern() {
+        return mPattern;
+    }
+
+    @NonNull
+    public DateTimeFormatter getFormatter() {
+        return mFormatter;
+    }
+
+    @NonNull
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * @return the {@link WatchChange} flags of all fields the format shows
+     */
+    public int getFields() {
+        return mFields;
+    }
+
+    public boolean hasSeconds() {
+        return (mFields & (WatchChange.SECOND | WatchChange.MILLIS)) != 0;
+    }
+
+    public boolean hasMinutes() {
+        return (mFields & WatchChange.MINUTE) != 0;
+    }
+
+    /**
+     * @return true if the format shows an am/pm indicator
+     */
+    public boolean hasHalfday() {
+        return hasField('a');
+    }
+
+    public boolean hasDateFields() {
+        return (mFields & WatchChange.DAY) != 0;
+    }
+
+    /**
+     * Returns the finest {@link WatchChange} flag on which the rendered text can
+     * change, or 0 if the format only contains literal text.
+     */
+    public int getSmallestChange() {
+        return Integer.lowestOneBit(mFields & ~WatchChange.TIMEZONE);
+    }
+
+    /**
+     * Returns the slowest tick rate that still shows every change of the format,
+     * but never slower than {@link TickRate#MINUTE}: faces draw more than their
+     * text, e.g. analog hands next to a date, and expect minute updates.
+     * {@link TickRate#HOUR} has to be set explicitly.
+     */
+    @NonNull
+    public TickRate getTickRate() {
+        int smallest = getSmallestChange();
+        if (smallest == WatchChange.MILLIS || smallest == WatchChange.SECOND) {
+            return TickRate.SECOND;
+        } else {
+            return TickRate.MINUTE;
+        }
+    }
+
+    /**
+     * @return the maximum number of characters the format renders in its locale
+     */
+    public int getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    FormatSegment[] getSegments() {
+        return mSegments;
+    }
+
+    private boolean hasField(char letter) {
+        for (FormatSegment segment : mSegments) {
+            if (segment.letter == letter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int getMaxWidth(FormatSegment segment, DateFormatSymbols symbols) {
+        if (segment.isLiteral()) {
+            return segment.literal.length();
+        }
+
+        int count = segment.count;
+        switch (segment.letter) {
+            case 'a':
+                return maxLength(symbols.getAmPmStrings());
+            case 'G':
+                return maxLength(symbols.getEras());
+            case 'E':
+                return maxLength(count >= 4 ? symbols.getWeekdays() : symbols.getShortWeekdays());
+            case 'M':
+                if (count >= 3) {
+                    return maxLength(count >= 4 ? symbols.getMonths() : symbols.getShortMonths());
+                }
+                return Math.max(count, 2);
+            case 'y': case 'Y': case 'x':
+                return count == 2 ? 2 : Math.max(count, 4);
+            case 'D':
+                return Math.max(count, 3);
+            case 'S': case 'e':
+                return count;
+            case 'Z':
+                return count == 1 ? 5 : count == 2 ? 6 : MAX_ZONE_NAME_WIDTH;
+            case 'z':
+                return MAX_ZONE_NAME_WIDTH;
+            default:
+                return Math.max(count, 2);
+        }
+    }
+
+    private static int maxLength(String[] strings) {
+        int max = 0;
+        for (String string : strings) {
+            if (string != null) {
+                max = Math.max(max, string.length());
+            }
+        }
+        return max;
+    }
+}
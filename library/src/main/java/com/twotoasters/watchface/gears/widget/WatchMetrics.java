@@ -0,0 +1,279 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in counters and histograms describing how a {@link Watch} delivers
+ * updates: how late second ticks arrive, how long the watchface takes to
+ * handle them, and where updates come from.
+ *
+ * Recording is lock-free and does not allocate, so metrics can stay enabled in
+ * production. Snapshots may be taken from any thread. One instance can be
+ * shared by several watches to aggregate them.
+ *
+ * @see Watch#setMetrics(WatchMetrics)
+ */
+public class WatchMetrics {
+
+    private static final DispatchSource[] SOURCES = DispatchSource.values();
+
+    private final AtomicLongArray mDispatches = new AtomicLongArray(SOURCES.length);
+    private final AtomicLong mDuplicates = new AtomicLong();
+    private final AtomicLong mSuppressed = new AtomicLong();
+
+    private final Histogram mTickLateness = new Histogram();
+    private final Histogram mCallbackDuration = new Histogram();
+
+    void recordDispatch(DispatchSource source) {
+        mDispatches.incrementAndGet(source.ordinal());
+    }
+
+    void recordDuplicate() {
+        mDuplicates.incrementAndGet();
+    }
+
+    void recordSuppressed() {
+        mSuppressed.incrementAndGet();
+    }
+
+    void recordTickLateness(long millis) {
+        mTickLateness.record(millis);
+    }
+
+    void recordCallbackDuration(long nanos) {
+        mCallbackDuration.record(nanos / 1000);
+    }
+
+    /**
+     * @return how many times the given source caused an update
+     */
+    public long getDispatchCount(@NonNull DispatchSource source) {
+        return mDispatches.get(source.ordinal());
+    }
+
+    /**
+     * @return how many time updates did not change the second or any coarser
+     *         field, such as a minute tick arriving in the same second as a
+     *         second tick
+     */
+    public long getDuplicateCount() {
+        return mDuplicates.get();
+    }
+
+    /**
+     * @return how many updates were not delivered because nothing changed
+     * @see Watch#setDispatchOnlyChanges(boolean)
+     */
+    public long getSuppressedCount() {
+        return mSuppressed.get();
+    }
+
+    /**
+     * @return milliseconds between a wall clock second boundary and the delivery
+     *         of the second tick aimed at it
+     */
+    @NonNull
+    public Histogram getTickLateness() {
+        return mTickLateness;
+    }
+
+    /**
+     * @return microseconds spent in the watchface's time callback
+     */
+    @NonNull
+    public Histogram getCallbackDuration() {
+        return mCallbackDuration;
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        return new Snapshot(this, false);
+    }
+
+    /**
+     * Takes a snapshot and resets every counter in the same pass, so no update
+     * is counted twice or lost between consecutive calls.
+     */
+    @NonNull
+    public Snapshot snapshotAndReset() {
+        return new Snapshot(this, true);
+    }
+
+    public void reset() {
+        for (int i = 0; i < SOURCES.length; i++) {
+            mDispatches.set(i, 0);
+        }
+        mDuplicates.set(0);
+        mSuppressed.set(0);
+        mTickLateness.reset();
+        mCallbackDuration.reset();
+    }
+
+    /**
+     * An immutable copy of all metrics at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long[] mDispatches;
+        private final long mDuplicates;
+        private final long mSuppressed;
+        private final Histogram.Snapshot mTickLateness;
+        private final Histogram.Snapshot mCallbackDuration;
+
+        private Snapshot(WatchMetrics metrics, boolean reset) {
+            mDispatches = new long[SOURCES.length];
+            for (int i = 0; i < SOURCES.length; i++) {
+                mDispatches[i] = reset ? metrics.mDispatches.getAndSet(i, 0) : metrics.mDispatches.get(i);
+            }
+            mDuplicates = reset ? metrics.mDuplicates.getAndSet(0) : metrics.mDuplicates.get();
+            mSuppressed = reset ? metrics.mSuppressed.getAndSet(0) : metrics.mSuppressed.get();
+            mTickLateness = new Histogram.Snapshot(metrics.mTickLateness, reset);
+            mCallbackDuration = new Histogram.Snapshot(metrics.mCallbackDuration, reset);
+        }
+
+        public long getDispatchCount(@NonNull DispatchSource source) {
+            return mDispatches[source.ordinal()];
+        }
+
+        public long getDuplicateCount() {
+            return mDuplicates;
+        }
+
+        public long getSuppressedCount() {
+            return mSuppressed;
+        }
+
+        @NonNull
+        public Histogram.Snapshot getTickLateness() {
+            return mTickLateness;
+        }
+
+        @NonNull
+        public Histogram.Snapshot getCallbackDuration() {
+            return mCallbackDuration;
+        }
+    }
+
+    /**
+     * A lock-free histogram with a fixed number of power-of-two buckets. Bucket 0
+     * counts zeros and bucket {@code i} counts values from {@code 2^(i-1)} to
+     * {@code 2^i - 1}; values beyond the last bucket are counted in it.
+     */
+    public static final class Histogram {
+
+        public static final int BUCKET_COUNT = 32;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            mBuckets.incrementAndGet(bucketOf(value));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+
+        static int bucketOf(long value) {
+            return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1);
+        }
+
+        /**
+         * An immutable copy of a histogram.
+         */
+        public static final class Snapshot {
+
+            private final long[] mBuckets = new long[BUCKET_COUNT];
+            private final long mCount;
+            private final long mSum;
+            private final long mMax;
+
+            Snapshot(Histogram histogram, boolean reset) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    mBuckets[i] = reset ? histogram.mBuckets.getAndSet(i, 0) : histogram.mBuckets.get(i);
+                }
+                mCount = reset ? histogram.mCount.getAndSet(0) : histogram.mCount.get();
+                mSum = reset ? histogram.mSum.getAndSet(0) : histogram.mSum.get();
+                mMax = reset ? histogram.mMax.getAndSet(0) : histogram.mMax.get();
+            }
+
+            public long getCount() {
+                return mCount;
+            }
+
+            public long getSum() {
+                return mSum;
+            }
+
+            public long getMax() {
+                return mMax;
+            }
+
+            public double getMean() {
+                return mCount == 0 ? 0 : (double) mSum / mCount;
+            }
+
+            /**
+             * @return the number of values recorded in the given bucket
+             */
+            public long getBucketCount(int bucket) {
+                return mBuckets[bucket];
+            }
+
+            /**
+             * Returns an upper bound for the given percentile: the largest value
+             * that falls into the bucket containing it, or the maximum if lower.
+             *
+             * @param percentile between 0 and 100
+             */
+            public long getPercentile(double percentile) {
+                long total = 0;
+                for (long bucket : mBuckets) {
+                    total += bucket;
+                }
+                if (total == 0) {
+                    return 0;
+                }
+
+                long rank = (long) Math.ceil(total * percentile / 100.0);
+                long seen = 0;
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    seen += mBuckets[i];
+                    if (seen >= rank && mBuckets[i] > 0) {
+                        long upper = i == 0 ? 0 : (1L << i) - 1;
+                        return Math.min(upper, mMax);
+                    }
+                }
+                return mMax;
+            }
+        }
+    }
+}
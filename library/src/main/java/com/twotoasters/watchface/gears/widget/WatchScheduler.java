@@ -0,0 +1,37 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.os.Handler;
+
+/**
+ * Runs delayed work for a {@link TickHub}. Delays are measured against
+ * {@link WatchClock#uptimeMillis()} of the hub's clock.
+ *
+ * @see VirtualClock
+ */
+public interface WatchScheduler {
+
+    public void postDelayed(Runnable runnable, long delayMillis);
+    public void removeCallbacks(Runnable runnable);
+
+    /**
+     * Schedules on a {@link Handler}, i.e. on the device clock.
+     */
+    public static final class HandlerScheduler implements WatchScheduler {
+
+        private final Handler mHandler;
+
+        public HandlerScheduler(Handler handler) {
+            mHandler = handler;
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            mHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            mHandler.removeCallbacks(runnable);
+        }
+    }
+}
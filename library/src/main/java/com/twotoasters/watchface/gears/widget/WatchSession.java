@@ -0,0 +1,145 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Keeps {@link Watch} instances alive while their watchface is recreated, e.g.
+ * on a configuration change, and hands them to the new watchface.
+ *
+ * A reused watch keeps its compiled formats, time zone cache, battery state,
+ * tick rate and metrics, and the {@link TickHub} keeps its registrations for a
+ * while after the last watch detaches, so bringing a recreated face back is
+ * nearly free. Watchfaces get their watch through
+ * {@link Watch#obtain(IWatchface, String)}, which finds the session of their
+ * activity or application.
+ *
+ * Watches are kept by a key the watchface provides, which must tell apart the
+ * watchfaces shown at the same time, e.g. its view ID. A watch is only handed
+ * to a new watchface once its previous one is gone: detached from its window,
+ * and either garbage collected or part of a destroyed activity.
+ *
+ * All methods must be called on the main thread.
+ */
+public class WatchSession {
+
+    /**
+     * Implemented by activities and applications that keep a session for the
+     * watchfaces they show.
+     *
+     * @see com.twotoasters.watchface.gears.activity.GearsWatchfaceActivity
+     * @see com.twotoasters.watchface.gears.GearsWatchfaceApp
+     */
+    public interface Owner {
+        @NonNull
+        public WatchSession getWatchSession();
+    }
+
+    private final TickHub mTickHub;
+    private final HashMap<String, Watch> mWatches = new HashMap<>();
+
+    public WatchSession() {
+        this(null);
+    }
+
+    /**
+     * @param tickHub the hub new watches attach to, or null for the process-wide hub
+     */
+    public WatchSession(TickHub tickHub) {
+        mTickHub = tickHub;
+    }
+
+    /**
+     * Returns the session of the given context, its activity or application, or
+     * null if neither keeps one.
+     */
+    public static WatchSession get(@NonNull Context context) {
+        if (context instanceof Owner) {
+            return ((Owner) context).getWatchSession();
+        }
+        Context applicationContext = context.getApplicationContext();
+        if (applicationContext instanceof Owner) {
+            return ((Owner) applicationContext).getWatchSession();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the session an activity should keep: the application's session if
+     * it keeps one, else the session the activity retained across its last
+     * recreation, else a new one.
+     *
+     * @param retained the result of
+     *                 {@link android.app.Activity#getLastNonConfigurationInstance()}
+     */
+    @NonNull
+    public static WatchSession forActivity(@NonNull Context context, Object retained) {
+        Context applicationContext = context.getApplicationContext();
+        if (applicationContext instanceof Owner) {
+            return ((Owner) applicationContext).getWatchSession();
+        }
+        return retained instanceof WatchSession ? (WatchSession) retained : new WatchSession();
+    }
+
+    /**
+     * Returns the watch kept under the given key, bound to the given watchface.
+     * A new watch is kept if there is none yet. If the kept watch still belongs
+     * to another watchface, a new watch is returned without being kept.
+     */
+    @NonNull
+    public Watch obtain(@NonNull IWatchface watchface, @NonNull String key) {
+        Watch watch = mWatches.get(key);
+        if (watch != null) {
+            if (watch.isBoundTo(watchface)) {
+                return watch;
+            }
+            if (!watch.isAttached() && !watch.isBound()) {
+                watch.rebind(watchface);
+                return watch;
+            }
+            return new Watch(watchface, mTickHub);
+        }
+
+        watch = new Watch(watchface, mTickHub);
+        mWatches.put(key, watch);
+        return watch;
+    }
+
+    /**
+     * @return the kept watch bound to the given watchface, or null if there is none
+     */
+    public Watch getWatch(@NonNull IWatchface watchface) {
+        for (Watch watch : mWatches.values()) {
+            if (watch.isBoundTo(watchface)) {
+                return watch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets a watch whose watchface is gone for good.
+     */
+    public void release(@NonNull Watch watch) {
+        Iterator<Watch> iterator = mWatches.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == watch) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        mWatches.clear();
+    }
+
+    /**
+     * @return the number of watches kept
+     */
+    public int size() {
+        return mWatches.size();
+    }
+}
@@ -0,0 +1,120 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.os.BatteryManager;
+import android.support.annotation.NonNull;
+
+/**
+ * Drives a {@link TickHub} from a {@link VirtualClock}, standing in for the
+ * system broadcasts it would otherwise receive.
+ *
+ * Watches created with {@link Watch#Watch(IWatchface, TickHub)} and the
+ * simulator's hub receive second ticks, minute ticks on every wall clock minute
+ * boundary, and whatever time, time zone, battery and settings changes the
+ * caller replays, all as fast as the CPU allows:
+ * <pre>
+ * WatchSimulator simulator = new WatchSimulator(context, startMillis);
+ * Watch watch = new Watch(watchface, simulator.getTickHub());
+ * watch.onAttachedToWindow();
+ * simulator.advanceBy(7 * 24 * 60 * 60 * 1000L); // a week of ticks
+ * </pre>
+ */
+public class WatchSimulator {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    private final VirtualClock mClock;
+    private final TickHub mTickHub;
+
+    private final Runnable mTimeTick = new Runnable() {
+        @Override
+        public void run() {
+            mTickHub.onTimeTick();
+            scheduleTimeTick();
+        }
+    };
+
+    /**
+     * @param context           context the hub registers its receivers with; they
+     *                          are never used by the simulation
+     * @param currentTimeMillis the wall clock time to start at
+     */
+    public WatchSimulator(@NonNull Context context, long currentTimeMillis) {
+        mClock = new VirtualClock(currentTimeMillis);
+        mTickHub = new TickHub(context, mClock, mClock);
+        scheduleTimeTick();
+    }
+
+    @NonNull
+    public VirtualClock getClock() {
+        return mClock;
+    }
+
+    @NonNull
+    public TickHub getTickHub() {
+        return mTickHub;
+    }
+
+    /**
+     * Moves time forward, delivering every tick that falls due on the way.
+     */
+    public void advanceBy(long millis) {
+        mClock.advanceBy(millis);
+    }
+
+    /**
+     * Sets the wall clock, as {@link android.content.Intent#ACTION_TIME_CHANGED}.
+     */
+    public void setTime(long currentTimeMillis) {
+        mClock.setCurrentTimeMillis(currentTimeMillis);
+        mClock.removeCallbacks(mTimeTick);
+        scheduleTimeTick();
+        mTickHub.onTimeSet();
+    }
+
+    /**
+     * Changes the system time zone, as {@link android.content.Intent#ACTION_TIMEZONE_CHANGED}.
+     */
+    public void changeTimeZone(@NonNull String timeZoneId) {
+        mTickHub.onTimeZoneChanged(timeZoneId);
+    }
+
+    /**
+     * Delivers a battery level in percent while not charging, as
+     * {@link android.content.Intent#ACTION_BATTERY_CHANGED}.
+     */
+    public void changeBatteryLevel(int level) {
+        changeBattery(level, 100, 0, BatteryManager.BATTERY_STATUS_DISCHARGING);
+    }
+
+    /**
+     * Delivers a battery broadcast with the given extras.
+     *
+     * @see BatteryManager
+     */
+    public void changeBattery(int level, int scale, int plugged, int status) {
+        mTickHub.onBatteryChanged(level, scale, plugged, status);
+    }
+
+    /**
+     * Reports a change of the time format setting. Like the real observer, the
+     * change is evaluated once the debounce delay has passed in virtual time.
+     */
+    public void changeFormatSettings() {
+        mTickHub.scheduleFormatSettingsCheck();
+    }
+
+    /**
+     * Delivers a dim mode wakeup alarm.
+     */
+    public void deliverKeepAwake() {
+        mTickHub.getDimModeScheduler().onWakeup();
+        mTickHub.onKeepAwake();
+    }
+
+    private void scheduleTimeTick() {
+        long now = mClock.currentTimeMillis();
+        long intoMinute = ((now % MILLIS_PER_MINUTE) + MILLIS_PER_MINUTE) % MILLIS_PER_MINUTE;
+        mClock.postDelayed(mTimeTick, MILLIS_PER_MINUTE - intoMinute);
+    }
+}
@@ -0,0 +1,173 @@
+package com.twotoasters.watchface.gears.widget;
+
+/**
+ * A mutable snapshot of the current time, expressed as primitive fields.
+ *
+ * {@link Watch} keeps a single instance of this class and updates it in place
+ * on every tick, so delivering it to an {@link IWatchTimeListener} does not
+ * allocate. Listeners must not hold on to the instance past the callback if
+ * they need the values of a particular tick; use {@link #set(WatchTime)} to
+ * copy it instead.
+ */
+public final class WatchTime {
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60L * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+
+    private long mMillis;
+    private int mOffset;
+    private int mHourOfDay;
+    private int mMinuteOfHour;
+    private int mSecondOfMinute;
+    private int mMillisOfSecond;
+    private int mDayOfWeek;
+    private int mChanges;
+
+    private long mSecondIndex = Long.MIN_VALUE;
+    private long mMinuteIndex = Long.MIN_VALUE;
+    private long mHourIndex = Long.MIN_VALUE;
+    private long mDayIndex = Long.MIN_VALUE;
+
+    /**
+     * Updates all fields from the given instant and UTC offset, and records which
+     * of them changed since the previous update.
+     *
+     * @param millis  the instant in milliseconds since the epoch (UTC)
+     * @param offset  the offset of the local time zone from UTC in milliseconds
+     * @param changes additional {@link WatchChange} flags to report
+     */
+    void set(long millis, int offset, int changes) {
+        long localMillis = millis + offset;
+        long seconds = floorDiv(localMillis, MILLIS_PER_SECOND);
+        long minutes = floorDiv(localMillis, MILLIS_PER_MINUTE);
+        long hours = floorDiv(localMillis, MILLIS_PER_HOUR);
+        long days = floorDiv(localMillis, MILLIS_PER_DAY);
+
+        if (millis != mMillis || offset != mOffset) changes |= WatchChange.MILLIS;
+        if (seconds != mSecondIndex) changes |= WatchChange.SECOND;
+        if (minutes != mMinuteIndex) changes |= WatchChange.MINUTE;
+        if (hours != mHourIndex) changes |= WatchChange.HOUR;
+        if (days != mDayIndex) changes |= WatchChange.DAY;
+        if (offset != mOffset) changes |= WatchChange.TIMEZONE;
+
+        mChanges = changes;
+        mSecondIndex = seconds;
+        mMinuteIndex = minutes;
+        mHourIndex = hours;
+        mDayIndex = days;
+
+        mMillis = millis;
+        mOffset = offset;
+
+        int millisOfDay = (int) (localMillis - days * MILLIS_PER_DAY);
+
+        mHourOfDay = (int) (millisOfDay / MILLIS_PER_HOUR);
+        mMinuteOfHour = (int) ((millisOfDay / MILLIS_PER_MINUTE) % 60);
+        mSecondOfMinute = (int) ((millisOfDay / MILLIS_PER_SECOND) % 60);
+        mMillisOfSecond = (int) (millisOfDay % MILLIS_PER_SECOND);
+        // 1970-01-01 was a Thursday, ISO day 4
+        mDayOfWeek = (int) (floorMod(days + 3, 7) + 1);
+    }
+
+    /**
+     * Copies all fields from another snapshot.
+     */
+    public void set(WatchTime other) {
+        mMillis = other.mMillis;
+        mOffset = other.mOffset;
+        mHourOfDay = other.mHourOfDay;
+        mMinuteOfHour = other.mMinuteOfHour;
+        mSecondOfMinute = other.mSecondOfMinute;
+        mMillisOfSecond = other.mMillisOfSecond;
+        mDayOfWeek = other.mDayOfWeek;
+        mChanges = other.mChanges;
+        mSecondIndex = other.mSecondIndex;
+        mMinuteIndex = other.mMinuteIndex;
+        mHourIndex = other.mHourIndex;
+        mDayIndex = other.mDayIndex;
+    }
+
+    /**
+     * Adds {@link WatchChange} flags, e.g. those of an update that was never
+     * delivered.
+     */
+    void addChanges(int changes) {
+        mChanges |= changes;
+    }
+
+    /**
+     * @return the {@link WatchChange} flags describing what changed since the
+     *         previous update
+     */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * @return true if any of the given {@link WatchChange} flags are set
+     */
+    public boolean hasChanged(int changes) {
+        return (mChanges & changes) != 0;
+    }
+
+    /**
+     * @return the instant in milliseconds since the epoch (UTC)
+     */
+    public long getMillis() {
+        return mMillis;
+    }
+
+    /**
+     * @return the offset of the time zone from UTC in milliseconds
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return the hour of the day, 0-23
+     */
+    public int getHourOfDay() {
+        return mHourOfDay;
+    }
+
+    /**
+     * @return the minute of the hour, 0-59
+     */
+    public int getMinuteOfHour() {
+        return mMinuteOfHour;
+    }
+
+    /**
+     * @return the second of the minute, 0-59
+     */
+    public int getSecondOfMinute() {
+        return mSecondOfMinute;
+    }
+
+    /**
+     * @return the millisecond of the second, 0-999
+     */
+    public int getMillisOfSecond() {
+        return mMillisOfSecond;
+    }
+
+    /**
+     * @return the ISO day of the week, 1 (Monday) to 7 (Sunday), matching
+     *         {@link org.joda.time.DateTimeConstants}
+     */
+    public int getDayOfWeek() {
+        return mDayOfWeek;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
@@ -0,0 +1,200 @@
+package com.twotoasters.watchface.gears.widget;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Does the expensive first-time work of the library on a background thread
+ * while the application starts, instead of on the main thread when the first
+ * {@link Watch} is created.
+ *
+ * The warm-up loads Joda's time zone provider, resolves the default and system
+ * zones, and compiles the default formats for the current locale. A watch that
+ * is created after the formats are ready uses them; one created earlier compiles
+ * its own rather than waiting. Each stage is timed, along with the creation and
+ * first update of the first watch, so the effect can be checked with
+ * {@link #getReport()}.
+ *
+ * {@link com.twotoasters.watchface.gears.GearsWatchfaceApp} starts the warm-up;
+ * other applications can call {@link #start(Context)} from
+ * {@link android.app.Application#onCreate()}.
+ */
+public final class WatchWarmup {
+
+    public static final String STAGE_ZONE_PROVIDER = "zone provider";
+    public static final String STAGE_ZONES = "zones";
+    public static final String STAGE_FORMATS = "formats";
+    public static final String STAGE_FIRST_WATCH = "first watch";
+    public static final String STAGE_FIRST_UPDATE = "first update";
+
+    private static volatile WatchWarmup sInstance;
+
+    private final Locale mLocale;
+    private final long mStartNanos;
+
+    // Guarded by this; stage name to {duration, end since start} in nanoseconds
+    private final LinkedHashMap<String, long[]> mStages = new LinkedHashMap<>();
+
+    private volatile WatchFormat mFormat12;
+    private volatile WatchFormat mFormat24;
+    private volatile boolean mFinished;
+
+    private volatile boolean mFirstWatchWarm;
+    private boolean mFirstWatchRecorded; // main thread only
+    private boolean mFirstUpdateRecorded; // main thread only
+
+    /**
+     * Starts the warm-up, unless it was already started.
+     */
+    @NonNull
+    public static synchronized WatchWarmup start(@NonNull Context context) {
+        if (sInstance == null) {
+            final WatchWarmup warmup = new WatchWarmup(
+                    context.getResources().getConfiguration().locale);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    warmup.run();
+                }
+            }, "WatchWarmup");
+            thread.setDaemon(true);
+            thread.start();
+            sInstance = warmup;
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the warm-up of this process, or null if it was not started
+     */
+    public static WatchWarmup getInstance() {
+        return sInstance;
+    }
+
+    private WatchWarmup(Locale locale) {
+        mLocale = locale;
+        mStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true once all background stages have completed
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * @return true if the first watch was created with the warmed up formats
+     */
+    public boolean isFirstWatchWarm() {
+        return mFirstWatchWarm;
+    }
+
+    /**
+     * @return how long the given stage took in milliseconds, or -1 if it has not
+     *         completed
+     */
+    public synchronized long getStageMillis(@NonNull String stage) {
+        long[] times = mStages.get(stage);
+        return times != null ? times[0] / 1000000 : -1;
+    }
+
+    /**
+     * Returns one line per completed stage with its duration and when it
+     * completed, counted from {@link #start(Context)}.
+     */
+    @NonNull
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, long[]> stage : mStages.entrySet()) {
+            report.append(stage.getKey())
+                    .append(": ").append(stage.getValue()[0] / 1000000).append(" ms")
+                    .append(" (done at +").append(stage.getValue()[1] / 1000000).append(" ms)");
+            if (STAGE_FIRST_WATCH.equals(stage.getKey())) {
+                report.append(mFirstWatchWarm ? " with warm formats" : " with cold formats");
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * @return the warmed up 12-hour default format, or null if it is not ready
+     *         or was compiled for another locale
+     */
+    WatchFormat getFormat12(Locale locale) {
+        return mLocale.equals(locale) ? mFormat12 : null;
+    }
+
+    /**
+     * @return the warmed up 24-hour default format, or null if it is not ready
+     *         or was compiled for another locale
+     */
+    WatchFormat getFormat24(Locale locale) {
+        return mLocale.equals(locale) ? mFormat24 : null;
+    }
+
+    void onWatchCreated(long startNanos, boolean warm) {
+        if (!mFirstWatchRecorded) {
+            mFirstWatchRecorded = true;
+            mFirstWatchWarm = warm;
+            record(STAGE_FIRST_WATCH, startNanos);
+        }
+    }
+
+    void onWatchUpdated(long startNanos) {
+        if (!mFirstUpdateRecorded) {
+            mFirstUpdateRecorded = true;
+            record(STAGE_FIRST_UPDATE, startNanos);
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        DateTimeZone.getProvider();
+        record(STAGE_ZONE_PROVIDER, start);
+
+        start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        warmZone(DateTimeZone.getDefault(), now);
+        try {
+            warmZone(DateTimeZone.forID(TimeZone.getDefault().getID()), now);
+        } catch (IllegalArgumentException ignored) {
+            // Not known to Joda; watches fall back to the default zone as well
+        }
+        record(STAGE_ZONES, start);
+
+        start = System.nanoTime();
+        WatchFormat format12 = new WatchFormat(Watch.DEFAULT_PATTERN_12_HOUR,
+                Watch.DEFAULT_FORMAT_12_HOUR.withLocale(mLocale), mLocale);
+        WatchFormat format24 = new WatchFormat(Watch.DEFAULT_PATTERN_24_HOUR,
+                Watch.DEFAULT_FORMAT_24_HOUR.withLocale(mLocale), mLocale);
+        // The first print initializes the printers and locale symbols
+        format12.getFormatter().print(now);
+        format24.getFormatter().print(now);
+        mFormat12 = format12;
+        mFormat24 = format24;
+        record(STAGE_FORMATS, start);
+
+        mFinished = true;
+    }
+
+    private static void warmZone(DateTimeZone zone, long now) {
+        zone.getOffset(now);
+        zone.nextTransition(now);
+        ISOChronology.getInstance(zone);
+    }
+
+    private synchronized void record(String stage, long startNanos) {
+        long end = System.nanoTime();
+        mStages.put(stage, new long[] { end - startNanos, end - mStartNanos });
+    }
+}
@@ -0,0 +1,121 @@
+package com.twotoasters.watchface.gears.widget;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Resolves a time zone once and caches its current UTC offset until the next
+ * transition (daylight saving time change) of that zone.
+ *
+ * Looking up a zone and calculating its offset are comparatively expensive on
+ * wear hardware, so a {@link Watch} keeps one of these and only does that work
+ * when a transition passes or the zone itself changes.
+ */
+final class ZoneCache {
+
+    private String mZoneId;
+    private String mSystemZoneId;
+
+    private DateTimeZone mZone;
+    private int mOffset;
+    private long mValidFrom = Long.MAX_VALUE;
+    private long mValidUntil = Long.MIN_VALUE;
+
+    ZoneCache(String zoneId) {
+        mZoneId = zoneId;
+    }
+
+    /**
+     * Sets the explicit zone to use, or null to follow the system time zone.
+     */
+    void setZoneId(String zoneId) {
+        mZoneId = zoneId;
+        invalidate();
+    }
+
+    String getZoneId() {
+        return mZoneId;
+    }
+
+    /**
+     * Records a change of the system time zone, as announced by
+     * {@link android.content.Intent#ACTION_TIMEZONE_CHANGED}. Only has an effect
+     * when no explicit zone has been set.
+     *
+     * @param systemZoneId the new system zone ID, or null if unknown
+     */
+    void setSystemZoneId(String systemZoneId) {
+        mSystemZoneId = systemZoneId;
+        if (mZoneId == null) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Records the system time zone after changes may have been missed.
+     *
+     * @return true if the zone in use changed
+     */
+    boolean replaySystemZoneId(String systemZoneId) {
+        if (mZoneId != null) {
+            mSystemZoneId = systemZoneId;
+            return false;
+        }
+        String previousId = getZone().getID();
+        setSystemZoneId(systemZoneId);
+        return !getZone().getID().equals(previousId);
+    }
+
+    void invalidate() {
+        mZone = null;
+        mValidFrom = Long.MAX_VALUE;
+        mValidUntil = Long.MIN_VALUE;
+    }
+
+    DateTimeZone getZone() {
+        if (mZone == null) {
+            mZone = resolve();
+        }
+        return mZone;
+    }
+
+    /**
+     * Returns the offset of the zone from UTC at the given instant. Only touches
+     * the zone when the instant lies outside the range the cached offset is known
+     * to be valid for.
+     */
+    int getOffset(long millis) {
+        if (millis < mValidFrom || millis >= mValidUntil) {
+            recompute(millis);
+        }
+        return mOffset;
+    }
+
+    /**
+     * @return the instant of the next transition after the cached offset was
+     *         calculated, or {@link Long#MAX_VALUE} if the zone has none
+     */
+    long getNextTransition() {
+        return mValidUntil;
+    }
+
+    private void recompute(long millis) {
+        DateTimeZone zone = getZone();
+        mOffset = zone.getOffset(millis);
+        mValidFrom = millis;
+
+        long next = zone.nextTransition(millis);
+        mValidUntil = next > millis ? next : Long.MAX_VALUE;
+    }
+
+    private DateTimeZone resolve() {
+        String id = mZoneId != null ? mZoneId : mSystemZoneId;
+        if (id != null) {
+            try {
+                return DateTimeZone.forID(id);
+            } catch (IllegalArgumentException ignored) {
+                // Fall back to the default zone for IDs Joda does not know about
+            }
+        }
+        return DateTimeZone.getDefault();
+    }
+}